@@ -0,0 +1,108 @@
+package ch.ruyalabs.springkafkalabs.controller;
+
+import ch.ruyalabs.springkafkalabs.SpringKafkaLabsApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency percentiles of {@code POST /api/payment/trigger} (answers before the broker ack) and
+ * {@code POST /api/payment/trigger/async} (answers with the ack) with the servlet container on platform
+ * vs virtual threads (profile {@code virtual-threads}). The application runs against an embedded Kafka broker and
+ * is called over HTTP by 64 concurrent benchmark threads.
+ * <p>
+ * The sample time mode reports p99 latency. Virtual threads need Java 21 or later; on older JVMs the
+ * {@code VIRTUAL} run fails in setup instead of measuring platform threads again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@Fork(1)
+public class TriggerEndpointBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public Threading threading;
+
+    private EmbeddedKafkaKraftBroker broker;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient httpClient;
+
+    private HttpRequest request;
+
+    private HttpRequest asyncRequest;
+
+    @Setup
+    public void setUp() {
+        broker = new EmbeddedKafkaKraftBroker(1, 3, "payment-requests", "payment-responses");
+        broker.afterPropertiesSet();
+
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(SpringKafkaLabsApplication.class);
+        if (threading == Threading.VIRTUAL) {
+            builder.profiles("virtual-threads");
+        }
+        // Passed as arguments to take precedence over application.yml
+        context = builder.run("--server.port=0", "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString());
+
+        if (threading == Threading.VIRTUAL && !Threading.VIRTUAL.isActive(context.getEnvironment())) {
+            tearDown();
+            // A platform thread run reported as VIRTUAL would only duplicate the PLATFORM result
+            throw new IllegalStateException("Virtual threads are not supported on Java "
+                + Runtime.version().feature() + ", run with Java 21 or later or -p threading=PLATFORM");
+        }
+        System.out.println("[" + threading + "] Java " + Runtime.version().feature());
+
+        String port = context.getEnvironment().getProperty("local.server.port");
+        httpClient = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payment/trigger"))
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+        asyncRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payment/trigger/async"))
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        broker.destroy();
+    }
+
+    @Benchmark
+    public int trigger() throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * {@code POST /api/payment/trigger/async}, which answers only after the broker acknowledged the record
+     */
+    @Benchmark
+    public int triggerAsync() throws IOException, InterruptedException {
+        return httpClient.send(asyncRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
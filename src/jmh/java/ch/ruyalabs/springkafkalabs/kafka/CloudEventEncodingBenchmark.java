@@ -0,0 +1,148 @@
+package ch.ruyalabs.springkafkalabs.kafka;
+
+import ch.ruyalabs.springkafkalabs.kafka.consumer.CloudEventAttributeValidator;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.ConsumerStageMetrics;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.DuplicateResponseFilter;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.FailedRecordAttempts;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.KeyOrderedDispatcher;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseConsumer;
+import ch.ruyalabs.springkafkalabs.kafka.correlation.PaymentCorrelationStore;
+import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentOutcomeProducer;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusIndex;
+import ch.ruyalabs.types.DisbursedAmount;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.message.Encoding;
+import io.cloudevents.jackson.JsonFormat;
+import io.cloudevents.kafka.CloudEventSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of structured vs binary CloudEvent encoding: serializing a payment response event into a Kafka value
+ * (plus headers), and consuming that record through {@link PaymentResponseConsumer}. No broker is involved.
+ * <p>
+ * The value sizes of both encodings are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CloudEventEncodingBenchmark {
+
+    private static final String TOPIC = "payment-responses";
+
+    @Param({"STRUCTURED", "BINARY"})
+    public Encoding encoding;
+
+    private CloudEventSerializer serializer;
+
+    private CloudEvent cloudEvent;
+
+    private ConsumerRecord<String, byte[]> record;
+
+    private PaymentCorrelationStore correlationStore;
+
+    private PaymentResponseConsumer consumer;
+
+    @Setup
+    public void setUp() throws Exception {
+        serializer = new CloudEventSerializer();
+        serializer.configure(Map.of(CloudEventSerializer.ENCODING_CONFIG, encoding,
+            CloudEventSerializer.EVENT_FORMAT_CONFIG, JsonFormat.CONTENT_TYPE), false);
+
+        cloudEvent = createResponseEvent();
+
+        RecordHeaders headers = new RecordHeaders();
+        byte[] value = serializer.serialize(TOPIC, headers, cloudEvent);
+        record = new ConsumerRecord<>(TOPIC, 0, 0L, "a1b2c3d4-e5f6-7890-1234-567890abcdef", value);
+        headers.forEach(header -> record.headers().add(header));
+
+        correlationStore = new PaymentCorrelationStore(Duration.ofSeconds(30), 1000, new SimpleMeterRegistry());
+        // The same records are consumed in every invocation, so duplicate suppression stays off
+        consumer = new PaymentResponseConsumer(new CloudEventAttributeValidator(
+            new ClassPathResource("json/schema/cloudevent-response-schema.json"), List.of()), new KeyOrderedDispatcher(1),
+            correlationStore, new DuplicateResponseFilter(false, Duration.ofMinutes(10), 1000, 0.000001,
+            new SimpleMeterRegistry()), new PaymentStatusIndex(1024, new SimpleMeterRegistry()),
+            new ConsumerStageMetrics(new SimpleMeterRegistry()), (record, exception) -> { },
+            new PaymentOutcomeProducer(null, "", new ObjectMapper()), new FailedRecordAttempts(4));
+
+        System.out.println("[" + encoding + "] value size: " + value.length + " bytes, header count: "
+            + headers.toArray().length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.close();
+        correlationStore.destroy();
+    }
+
+    @Benchmark
+    public byte[] produce() {
+        return serializer.serialize(TOPIC, new RecordHeaders(), cloudEvent);
+    }
+
+    @Benchmark
+    public void consume() {
+        consumer.handlePaymentResponseBytes(record);
+    }
+
+    @Benchmark
+    public void produceAndConsume() {
+        RecordHeaders headers = new RecordHeaders();
+        byte[] value = serializer.serialize(TOPIC, headers, cloudEvent);
+
+        ConsumerRecord<String, byte[]> produced = new ConsumerRecord<>(TOPIC, 0, 0L, record.key(), value);
+        headers.forEach(header -> produced.headers().add(header));
+        consumer.handlePaymentResponseBytes(produced);
+    }
+
+    private static CloudEvent createResponseEvent() throws Exception {
+        PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+        response.setDisbursementId(UUID.fromString("a1b2c3d4-e5f6-7890-1234-567890abcdef"));
+        response.setStatus(PaymentDisbursementResponse.Status.PROCESSED);
+        response.setProcessedAt(new Date());
+        response.setTransactionId("txn_1234567890");
+
+        DisbursedAmount amount = new DisbursedAmount();
+        amount.setValue(150.75);
+        amount.setCurrency("USD");
+        response.setAmount(amount);
+
+        return CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("payment-service"))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withTime(OffsetDateTime.now())
+                .withData(new ObjectMapper().writeValueAsBytes(response))
+                .build();
+    }
+}
@@ -0,0 +1,129 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.springkafkalabs.kafka.correlation.PaymentCorrelationStore;
+import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentOutcomeProducer;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusIndex;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.jackson.JsonFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency percentiles of one poll (500 payment responses over 50 keys) through the batch listener,
+ * with the worker lanes of {@link KeyOrderedDispatcher} on platform vs virtual threads. No broker is involved.
+ * <p>
+ * The sample time mode reports the p99 latency per batch. Virtual threads need Java 21 or later; on older JVMs the
+ * {@code VIRTUAL} run fails in setup instead of measuring platform threads again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchConsumerThreadingBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int KEYS = 50;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public Threading threading;
+
+    private KeyOrderedDispatcher dispatcher;
+
+    private PaymentCorrelationStore correlationStore;
+
+    private PaymentResponseConsumer consumer;
+
+    private List<ConsumerRecord<String, String>> records;
+
+    @Setup
+    public void setUp() throws Exception {
+        dispatcher = createDispatcher();
+        correlationStore = new PaymentCorrelationStore(Duration.ofSeconds(30), 1000, new SimpleMeterRegistry());
+        // The same records are consumed in every invocation, so duplicate suppression stays off
+        consumer = new PaymentResponseConsumer(new CloudEventAttributeValidator(
+            new ClassPathResource("json/schema/cloudevent-response-schema.json"), List.of()), dispatcher,
+            correlationStore, new DuplicateResponseFilter(false, Duration.ofMinutes(10), 1000, 0.000001,
+            new SimpleMeterRegistry()), new PaymentStatusIndex(1024, new SimpleMeterRegistry()),
+            new ConsumerStageMetrics(new SimpleMeterRegistry()), (record, exception) -> { },
+            new PaymentOutcomeProducer(null, "", new ObjectMapper()), new FailedRecordAttempts(4));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonFormat jsonFormat = new JsonFormat();
+        records = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            UUID disbursementId = new UUID(0L, i % KEYS);
+            PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+            response.setDisbursementId(disbursementId);
+            response.setStatus(PaymentDisbursementResponse.Status.PROCESSED);
+            response.setProcessedAt(new Date());
+            response.setTransactionId("txn_" + i);
+
+            CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("payment-service"))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withData(objectMapper.writeValueAsBytes(response))
+                .build();
+
+            ConsumerRecord<String, String> record = new ConsumerRecord<>("payment-responses", 0, i,
+                disbursementId.toString(), new String(jsonFormat.serialize(cloudEvent), StandardCharsets.UTF_8));
+            record.headers().add("content-type", JsonFormat.CONTENT_TYPE.getBytes(StandardCharsets.UTF_8));
+            records.add(record);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.destroy();
+        correlationStore.destroy();
+    }
+
+    @Benchmark
+    public void consumeBatch() {
+        consumer.handlePaymentResponseBatch(records);
+    }
+
+    private KeyOrderedDispatcher createDispatcher() {
+        if (threading == Threading.VIRTUAL) {
+            try {
+                return new KeyOrderedDispatcher(0, new VirtualThreadTaskExecutor("payment-worker-"));
+            } catch (UnsupportedOperationException e) {
+                // A platform thread run reported as VIRTUAL would only duplicate the PLATFORM result
+                throw new IllegalStateException("Virtual threads are not supported on Java "
+                    + Runtime.version().feature() + ", run with Java 21 or later or -p threading=PLATFORM", e);
+            }
+        }
+        return new KeyOrderedDispatcher(0);
+    }
+}
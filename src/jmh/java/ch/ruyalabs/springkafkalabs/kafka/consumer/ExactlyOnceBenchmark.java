@@ -0,0 +1,184 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.springkafkalabs.SpringKafkaLabsApplication;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.jackson.JsonFormat;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consume-transform-produce throughput of the batch listener, at-least-once vs exactly-once
+ * ({@code payment.kafka.consumer.transactions.enabled}), for several poll sizes. The application runs against an
+ * embedded Kafka broker with 3 partitions per topic; every invocation produces 1000 payment responses and waits
+ * until a {@code read_committed} consumer has seen all 1000 outcomes, so the score is end-to-end responses/s.
+ * <p>
+ * With transactions every poll is one transaction, so {@code maxRecords} is the number of records per commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExactlyOnceBenchmark {
+
+    private static final String RESPONSE_TOPIC = "payment-responses";
+
+    private static final String OUTCOME_TOPIC = "payment-outcomes";
+
+    private static final int RESPONSES = 1000;
+
+    public enum Delivery { AT_LEAST_ONCE, EXACTLY_ONCE }
+
+    @Param({"AT_LEAST_ONCE", "EXACTLY_ONCE"})
+    public Delivery delivery;
+
+    @Param({"10", "100", "500"})
+    public int maxRecords;
+
+    private EmbeddedKafkaKraftBroker broker;
+
+    private ConfigurableApplicationContext context;
+
+    private Producer<String, String> producer;
+
+    private Consumer<String, String> outcomeConsumer;
+
+    private List<ProducerRecord<String, String>> responses;
+
+    @Setup
+    public void setUp() throws Exception {
+        broker = new EmbeddedKafkaKraftBroker(1, 3, RESPONSE_TOPIC, OUTCOME_TOPIC);
+        // A single broker cannot host the transaction log with the default replication factor of 3
+        broker.brokerProperties(Map.of(
+            "transaction.state.log.replication.factor", "1",
+            "transaction.state.log.min.isr", "1"));
+        broker.afterPropertiesSet();
+
+        // Passed as arguments to take precedence over application.yml. The same responses are sent in every
+        // invocation, so duplicate suppression stays off
+        context = new SpringApplicationBuilder(SpringKafkaLabsApplication.class)
+            .run("--server.port=0",
+                "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                "--payment.kafka.consumer.mode=batch",
+                "--payment.kafka.consumer.dedup.enabled=false",
+                "--payment.kafka.consumer.batch.max-records=" + maxRecords,
+                "--payment.kafka.consumer.transactions.enabled=" + (delivery == Delivery.EXACTLY_ONCE),
+                "--payment.kafka.topics.outcome=" + OUTCOME_TOPIC);
+
+        Map<String, Object> producerProps = KafkaTestUtils.producerProps(broker);
+        producerProps.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        producer = new DefaultKafkaProducerFactory<>(producerProps, new StringSerializer(), new StringSerializer())
+            .createProducer();
+
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("exactly-once-benchmark", "false", broker);
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        outcomeConsumer = new DefaultKafkaConsumerFactory<>(consumerProps, new StringDeserializer(),
+            new StringDeserializer()).createConsumer();
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (int partition = 0; partition < 3; partition++) {
+            partitions.add(new TopicPartition(OUTCOME_TOPIC, partition));
+        }
+        outcomeConsumer.assign(partitions);
+        outcomeConsumer.seekToEnd(partitions);
+        partitions.forEach(outcomeConsumer::position);
+
+        responses = createResponses();
+        System.out.println("[" + delivery + ", max-records " + maxRecords + "] outcomes of " + RESPONSES
+            + " responses per invocation");
+    }
+
+    @TearDown
+    public void tearDown() {
+        outcomeConsumer.close();
+        producer.close();
+        context.close();
+        broker.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RESPONSES)
+    public int consumeTransformProduce() {
+        responses.forEach(producer::send);
+        producer.flush();
+
+        int outcomes = 0;
+        long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+        while (outcomes < RESPONSES) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Only " + outcomes + " of " + RESPONSES + " outcomes received");
+            }
+            outcomes += outcomeConsumer.poll(Duration.ofMillis(100)).count();
+        }
+        return outcomes;
+    }
+
+    /**
+     * Structured mode payment responses, one disbursementId each so they spread over partitions and worker lanes
+     */
+    private List<ProducerRecord<String, String>> createResponses() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonFormat jsonFormat = new JsonFormat();
+        List<ProducerRecord<String, String>> records = new ArrayList<>(RESPONSES);
+        for (int i = 0; i < RESPONSES; i++) {
+            PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+            response.setDisbursementId(UUID.randomUUID());
+            response.setStatus(PaymentDisbursementResponse.Status.PROCESSED);
+            response.setProcessedAt(new Date());
+            response.setTransactionId("txn_" + i);
+
+            CloudEvent cloudEvent = CloudEventBuilder.v1()
+                    .withId(UUID.randomUUID().toString())
+                    .withSource(URI.create("payment-service"))
+                    .withType("com.ruyalabs.payment.disbursement.request")
+                    .withDataContentType("application/json")
+                    .withData(objectMapper.writeValueAsBytes(response))
+                    .build();
+            ProducerRecord<String, String> record = new ProducerRecord<>(RESPONSE_TOPIC,
+                response.getDisbursementId().toString(),
+                new String(jsonFormat.serialize(cloudEvent), StandardCharsets.UTF_8));
+            record.headers().add("content-type",
+                "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+            records.add(record);
+        }
+        return records;
+    }
+}
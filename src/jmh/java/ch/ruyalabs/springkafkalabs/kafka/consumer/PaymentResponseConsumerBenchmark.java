@@ -0,0 +1,151 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.springkafkalabs.kafka.correlation.PaymentCorrelationStore;
+import ch.ruyalabs.springkafkalabs.kafka.header.CloudEventHeaders;
+import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentOutcomeProducer;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusIndex;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.jackson.JsonFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the stages of {@link PaymentResponseConsumer} on the CloudEvent fixtures in
+ * {@code src/main/resources/json}: the structured mode header check, deserializing the CloudEvent (single pass
+ * decoder and generic format), validating its attributes, mapping the data to {@link PaymentDisbursementResponse},
+ * and the full {@link PaymentResponseConsumer#handlePaymentResponse(ConsumerRecord)}. No broker is involved.
+ * <p>
+ * The stages are private to the consumer, so they are measured through the components it delegates to. Run with
+ * {@code -prof gc} (the default of the {@code jmh} profile) for the allocation rate per record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentResponseConsumerBenchmark {
+
+    @Param({"valid_cloudevent_response", "invalid_cloudevent_wrong_type", "invalid_cloudevent_wrong_source"})
+    public String fixture;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final JsonFormat jsonFormat = new JsonFormat();
+
+    private CloudEventResponseDecoder responseDecoder;
+
+    private CloudEventAttributeValidator attributeValidator;
+
+    private PaymentCorrelationStore correlationStore;
+
+    private PaymentResponseConsumer consumer;
+
+    private ConsumerRecord<String, String> record;
+
+    private Headers headers;
+
+    private byte[] payload;
+
+    private CloudEvent cloudEvent;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = new ClassPathResource("json/" + fixture + ".json").getInputStream()) {
+            payload = in.readAllBytes();
+        }
+        record = new ConsumerRecord<>("payment-responses", 0, 0L, "550e8400-e29b-41d4-a716-446655440000",
+            new String(payload, StandardCharsets.UTF_8));
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+        headers = record.headers();
+
+        responseDecoder = new CloudEventResponseDecoder(objectMapper);
+        attributeValidator = new CloudEventAttributeValidator(
+            new ClassPathResource("json/schema/cloudevent-response-schema.json"), List.of());
+        cloudEvent = jsonFormat.deserialize(payload);
+        data = cloudEvent.getData().toBytes();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        correlationStore = new PaymentCorrelationStore(Duration.ofSeconds(30), 1000, meterRegistry);
+        // The same record is consumed in every invocation, so duplicate suppression stays off
+        consumer = new PaymentResponseConsumer(attributeValidator, new KeyOrderedDispatcher(1), correlationStore,
+            new DuplicateResponseFilter(false, Duration.ofMinutes(10), 1000, 0.000001, meterRegistry),
+            new PaymentStatusIndex(1024, meterRegistry), new ConsumerStageMetrics(meterRegistry),
+            // Invalid fixtures are poison pills; the DLT is left out, so only their classification is measured.
+            // Without an outcome topic no outcomes are published
+            (record, exception) -> { }, new PaymentOutcomeProducer(null, "", objectMapper),
+            new FailedRecordAttempts(4));
+
+        System.out.println("[" + fixture + "] " + payload.length + " bytes, attributes valid: "
+            + attributeValidator.validate(cloudEvent));
+    }
+
+    @TearDown
+    public void tearDown() {
+        correlationStore.destroy();
+    }
+
+    @Benchmark
+    public boolean isStructuredMode() {
+        return CloudEventHeaders.STRUCTURED_CONTENT_TYPE.matches(headers);
+    }
+
+    /**
+     * Single pass decoder that binds the data while reading the envelope, the consumer's first choice
+     */
+    @Benchmark
+    public CloudEvent deserializeCloudEvent() {
+        return responseDecoder.decode(payload);
+    }
+
+    /**
+     * Generic CloudEvent JSON format, the consumer's fallback for payloads the decoder does not handle
+     */
+    @Benchmark
+    public CloudEvent deserializeCloudEventGeneric() {
+        return jsonFormat.deserialize(payload);
+    }
+
+    @Benchmark
+    public boolean validateCloudEventAttributes() {
+        return attributeValidator.validate(cloudEvent);
+    }
+
+    /**
+     * Mapping of raw data bytes, as done for events read by the generic format or in binary mode
+     */
+    @Benchmark
+    public PaymentDisbursementResponse mapPaymentResponse() throws IOException {
+        return objectMapper.readValue(data, PaymentDisbursementResponse.class);
+    }
+
+    @Benchmark
+    public void handlePaymentResponse() {
+        consumer.handlePaymentResponse(record);
+    }
+}
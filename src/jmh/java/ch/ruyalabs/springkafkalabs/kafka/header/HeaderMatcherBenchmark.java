@@ -0,0 +1,66 @@
+package ch.ruyalabs.springkafkalabs.kafka.header;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the String based content-type check the consumer used before with {@link HeaderMatcher}.
+ * Run with {@code -prof gc}: the matcher benchmarks report {@code gc.alloc.rate.norm} of 0 B/op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeaderMatcherBenchmark {
+
+    private static final HeaderMatcher STRUCTURED =
+        HeaderMatcher.mediaType("content-type", "application/cloudevents+json");
+
+    private static final HeaderMatcher TYPE =
+        HeaderMatcher.exact("ce_type", "com.ruyalabs.payment.disbursement.request");
+
+    private Headers headers;
+
+    @Setup
+    public void setUp() {
+        headers = new RecordHeaders();
+        headers.add("ce_type", "com.ruyalabs.payment.disbursement.request".getBytes());
+        headers.add("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01".getBytes());
+        headers.add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+    }
+
+    @Benchmark
+    public boolean stringContentTypeCheck() {
+        Header contentTypeHeader = headers.lastHeader("content-type");
+        if (contentTypeHeader == null) {
+            return false;
+        }
+        String contentType = new String(contentTypeHeader.value());
+        return contentType.toLowerCase().contains("application/cloudevents+json");
+    }
+
+    @Benchmark
+    public boolean matcherContentTypeCheck() {
+        return STRUCTURED.matches(headers);
+    }
+
+    @Benchmark
+    public boolean matcherCeTypeCheck() {
+        return TYPE.matches(headers);
+    }
+}
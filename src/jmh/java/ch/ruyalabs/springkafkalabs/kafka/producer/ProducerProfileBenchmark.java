@@ -0,0 +1,161 @@
+package ch.ruyalabs.springkafkalabs.kafka.producer;
+
+import ch.ruyalabs.springkafkalabs.config.ProducerProfileProperties;
+import ch.ruyalabs.types.PaymentAmount;
+import ch.ruyalabs.types.PaymentDisbursementRequest;
+import ch.ruyalabs.types.PaymentRecipient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.message.Encoding;
+import io.cloudevents.jackson.JsonFormat;
+import io.cloudevents.kafka.CloudEventSerializer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages per second and send latency of the producer profiles in {@code application.yml}, sending payment
+ * request CloudEvents the way {@link PaymentRequestProducer} does to an embedded Kafka broker.
+ * <p>
+ * {@code pipelined} sends 1000 records without waiting and then waits for all acks; its score is msgs/s.
+ * {@code sendLatency} waits for the ack of every single send, so its percentiles are the send latency including
+ * linger time.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ProducerProfileBenchmark {
+
+    private static final String TOPIC = "payment-requests";
+
+    private static final int PIPELINED_SENDS = 1000;
+
+    @Param({"low-latency", "high-throughput", "bulk-backfill"})
+    public String profile;
+
+    private EmbeddedKafkaKraftBroker broker;
+
+    private DefaultKafkaProducerFactory<String, CloudEvent> producerFactory;
+
+    private KafkaTemplate<String, CloudEvent> kafkaTemplate;
+
+    private CloudEvent cloudEvent;
+
+    private String key;
+
+    @Setup
+    public void setUp() throws Exception {
+        broker = new EmbeddedKafkaKraftBroker(1, 3, TOPIC);
+        broker.afterPropertiesSet();
+
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, CloudEventSerializer.class);
+        configProps.put(CloudEventSerializer.ENCODING_CONFIG, Encoding.STRUCTURED);
+        configProps.put(CloudEventSerializer.EVENT_FORMAT_CONFIG, JsonFormat.CONTENT_TYPE);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.putAll(loadProfiles().producerConfig(profile));
+
+        producerFactory = new DefaultKafkaProducerFactory<>(configProps);
+        kafkaTemplate = new KafkaTemplate<>(producerFactory);
+
+        PaymentDisbursementRequest request = createPaymentRequest();
+        key = request.getDisbursementId().toString();
+        cloudEvent = CloudEventBuilder.v1()
+            .withId(UUID.randomUUID().toString())
+            .withSource(URI.create("payment-service"))
+            .withType("com.ruyalabs.payment.disbursement.request")
+            .withDataContentType("application/json")
+            .withData(new ObjectMapper().writeValueAsBytes(request))
+            .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        producerFactory.destroy();
+        broker.destroy();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(PIPELINED_SENDS)
+    public void pipelined() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[PIPELINED_SENDS];
+        for (int i = 0; i < PIPELINED_SENDS; i++) {
+            futures[i] = kafkaTemplate.send(TOPIC, key, cloudEvent);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SendResult<String, CloudEvent> sendLatency() {
+        return kafkaTemplate.send(TOPIC, key, cloudEvent).join();
+    }
+
+    /**
+     * Bind the profiles from the application configuration, so the benchmark measures exactly what is deployed
+     */
+    private static ProducerProfileProperties loadProfiles() throws Exception {
+        StandardEnvironment environment = new StandardEnvironment();
+        new YamlPropertySourceLoader().load("application", new ClassPathResource("application.yml"))
+            .forEach(environment.getPropertySources()::addLast);
+        return new Binder(ConfigurationPropertySources.get(environment))
+            .bind("payment.kafka.producer", ProducerProfileProperties.class)
+            .get();
+    }
+
+    private static PaymentDisbursementRequest createPaymentRequest() {
+        PaymentDisbursementRequest request = new PaymentDisbursementRequest();
+        request.setDisbursementId(UUID.randomUUID());
+
+        PaymentRecipient recipient = new PaymentRecipient();
+        recipient.setName("John Doe");
+        recipient.setEmail("john.doe@example.com");
+        request.setRecipient(recipient);
+
+        PaymentAmount amount = new PaymentAmount();
+        amount.setValue(2500.50);
+        amount.setCurrency("USD");
+        request.setAmount(amount);
+
+        request.setPaymentMethod(PaymentDisbursementRequest.PaymentMethod.BANK_TRANSFER);
+        request.setRequestedAt(new Date());
+        return request;
+    }
+}
@@ -0,0 +1,219 @@
+package ch.ruyalabs.springkafkalabs.kafka.producer;
+
+import ch.ruyalabs.springkafkalabs.kafka.correlation.PaymentCorrelationStore;
+import ch.ruyalabs.types.PaymentAmount;
+import ch.ruyalabs.types.PaymentDisbursementRequest;
+import ch.ruyalabs.types.PaymentRecipient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.data.PojoCloudEventData;
+import io.cloudevents.core.message.Encoding;
+import io.cloudevents.jackson.JsonFormat;
+import io.cloudevents.kafka.CloudEventSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of turning a {@link PaymentDisbursementRequest} into Kafka record bytes, step by step (data mapping,
+ * CloudEvent id, source and time, envelope, CloudEvent serialization) and for the whole
+ * {@link PaymentRequestProducer#sendPaymentRequestAsync(PaymentDisbursementRequest)} path. The
+ * {@link KafkaTemplate} sends to a {@link MockProducer}, which runs the key and value serializers but needs no
+ * broker.
+ * <p>
+ * Each variant is compared in structured mode with the JSON and the compact protobuf event format, and in binary
+ * mode. The value and header sizes of each variant are printed during setup. Run with {@code -prof gc} (the default
+ * of the {@code jmh} profile) for the allocation rate per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProducerSerializationBenchmark {
+
+    private static final String TOPIC = "payment-requests";
+
+    public enum Variant {
+
+        STRUCTURED_JSON(Encoding.STRUCTURED, JsonFormat.CONTENT_TYPE),
+        STRUCTURED_PROTOBUF(Encoding.STRUCTURED, "application/cloudevents+protobuf"),
+        BINARY(Encoding.BINARY, JsonFormat.CONTENT_TYPE);
+
+        private final Encoding encoding;
+        private final String eventFormat;
+
+        Variant(Encoding encoding, String eventFormat) {
+            this.encoding = encoding;
+            this.eventFormat = eventFormat;
+        }
+    }
+
+    @Param({"STRUCTURED_JSON", "STRUCTURED_PROTOBUF", "BINARY"})
+    public Variant variant;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CloudEventSerializer serializer;
+
+    private PaymentDisbursementRequest request;
+
+    private CloudEvent cloudEvent;
+
+    private MockProducer<String, CloudEvent> mockProducer;
+
+    private PaymentCorrelationStore correlationStore;
+
+    private PaymentRequestProducer producer;
+
+    @Setup
+    public void setUp() throws Exception {
+        serializer = new CloudEventSerializer();
+        serializer.configure(Map.of(CloudEventSerializer.ENCODING_CONFIG, variant.encoding,
+            CloudEventSerializer.EVENT_FORMAT_CONFIG, variant.eventFormat), false);
+
+        request = createPaymentRequest();
+        // Data already mapped, so serializeEvent measures the envelope and headers only
+        cloudEvent = CloudEventBuilder.v1()
+            .withId(UUID.randomUUID().toString())
+            .withSource(URI.create("payment-service"))
+            .withType("com.ruyalabs.payment.disbursement.request")
+            .withDataContentType("application/json")
+            .withTime(OffsetDateTime.now())
+            .withData(objectMapper.writeValueAsBytes(request))
+            .build();
+
+        // MockProducer serializes without headers, which CloudEventSerializer rejects; the ce_ headers of the binary
+        // mode are still written, just not kept with the record
+        Serializer<CloudEvent> valueSerializer = (topic, event) -> serializer.serialize(topic, new RecordHeaders(), event);
+        // KafkaTemplate closes producers that do not come from a DefaultKafkaProducerFactory after every send
+        mockProducer = new MockProducer<>(true, new StringSerializer(), valueSerializer) {
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        correlationStore = new PaymentCorrelationStore(Duration.ofSeconds(30), 1000, meterRegistry);
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(1000, "fail-fast",
+            Duration.ofMillis(100), Duration.ofSeconds(1), meterRegistry);
+        producer = new PaymentRequestProducer(new KafkaTemplate<>(() -> mockProducer), TOPIC, objectMapper,
+            inFlightLimiter, correlationStore, meterRegistry);
+
+        RecordHeaders headers = new RecordHeaders();
+        byte[] value = serializer.serialize(TOPIC, headers, cloudEvent);
+        int headerBytes = 0;
+        for (Header header : headers) {
+            headerBytes += header.key().length() + header.value().length;
+        }
+        System.out.println("[" + variant + "] value " + value.length + " bytes, headers " + headerBytes + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() {
+        correlationStore.destroy();
+    }
+
+    @Benchmark
+    public byte[] serializeData() throws Exception {
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public String randomId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public URI sourceUri() {
+        return URI.create("payment-service");
+    }
+
+    @Benchmark
+    public OffsetDateTime timestamp() {
+        return OffsetDateTime.now();
+    }
+
+    /**
+     * Envelope as built by the producer; the data is wrapped and only mapped once the event is serialized
+     */
+    @Benchmark
+    public CloudEvent buildEnvelope() {
+        return CloudEventBuilder.v1()
+            .withId(UUID.randomUUID().toString())
+            .withSource(URI.create("payment-service"))
+            .withType("com.ruyalabs.payment.disbursement.request")
+            .withDataContentType("application/json")
+            .withTime(OffsetDateTime.now())
+            .withData(PojoCloudEventData.wrap(request, objectMapper::writeValueAsBytes))
+            .build();
+    }
+
+    /**
+     * Record value (and, in binary mode, the {@code ce_} headers) of an event whose data is already mapped
+     */
+    @Benchmark
+    public byte[] serializeEvent() {
+        return serializer.serialize(TOPIC, new RecordHeaders(), cloudEvent);
+    }
+
+    /**
+     * The whole path from request to serialized record, through the in-flight limiter and the {@link KafkaTemplate}
+     */
+    @Benchmark
+    public SendResult<String, CloudEvent> sendPaymentRequest() throws Exception {
+        SendResult<String, CloudEvent> result = producer.sendPaymentRequestAsync(request).get();
+        // The mock keeps every sent record otherwise
+        mockProducer.clear();
+        return result;
+    }
+
+    private static PaymentDisbursementRequest createPaymentRequest() {
+        PaymentDisbursementRequest request = new PaymentDisbursementRequest();
+        request.setDisbursementId(UUID.randomUUID());
+
+        PaymentRecipient recipient = new PaymentRecipient();
+        recipient.setName("John Doe");
+        recipient.setEmail("john.doe@example.com");
+        request.setRecipient(recipient);
+
+        PaymentAmount amount = new PaymentAmount();
+        amount.setValue(2500.50);
+        amount.setCurrency("USD");
+        request.setAmount(amount);
+
+        request.setPaymentMethod(PaymentDisbursementRequest.PaymentMethod.BANK_TRANSFER);
+        request.setRequestedAt(new Date());
+        return request;
+    }
+}
@@ -0,0 +1,22 @@
+package ch.ruyalabs.springkafkalabs.config;
+
+/**
+ * Listener mode used for the payment response topic, selected via {@code payment.kafka.consumer.mode}.
+ */
+public enum ConsumerMode {
+
+    /**
+     * One record per listener invocation, offsets committed after every record.
+     */
+    RECORD,
+
+    /**
+     * All records of a poll per listener invocation, offsets committed once per poll.
+     */
+    BATCH,
+
+    /**
+     * Like {@link #RECORD}, but the value is consumed as raw bytes and never turned into a String.
+     */
+    BYTES
+}
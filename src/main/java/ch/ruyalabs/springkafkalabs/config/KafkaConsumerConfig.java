@@ -1,27 +1,59 @@
 package ch.ruyalabs.springkafkalabs.config;
 
+import ch.ruyalabs.springkafkalabs.kafka.consumer.ConsumerStageMetrics;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.FailedRecordAttempts;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.KeyOrderedDispatcher;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseFailure;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseRecordFilter;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.PoisonPillException;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.message.Encoding;
 import io.cloudevents.jackson.JsonFormat;
 import io.cloudevents.kafka.CloudEventDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultAfterRollbackProcessor;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
 import org.springframework.util.backoff.FixedBackOff;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
 
 @Configuration
 @EnableKafka
@@ -29,24 +61,111 @@ public class KafkaConsumerConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(KafkaConsumerConfig.class);
 
+    /**
+     * Header with the {@link PaymentResponseFailure} class of a record published to the DLT
+     */
+    public static final String FAILURE_CLASS_HEADER = "payment-failure-class";
+
+    /**
+     * Delay between the deliveries of a failed record, and the number of redeliveries before it goes to the DLT
+     */
+    private static final long RETRY_INTERVAL_MS = 1000L;
+    private static final long RETRIES = 3L;
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${payment.kafka.consumer.mode:record}")
+    private ConsumerMode consumerMode;
+
+    @Value("${payment.kafka.consumer.filter.enabled:true}")
+    private boolean filterEnabled;
+
+    @Value("${payment.kafka.consumer.workers:0}")
+    private int workers;
+
+    @Value("${payment.kafka.topics.response}")
+    private String paymentResponseTopic;
+
+    @Value("${payment.kafka.topics.retry.dlt-suffix:-dlt}")
+    private String dltTopicSuffix;
+
+    @Value("${payment.kafka.consumer.batch.max-records:500}")
+    private int batchMaxRecords;
+
+    @Value("${payment.kafka.consumer.batch.min-bytes:1}")
+    private int batchMinBytes;
+
+    @Value("${payment.kafka.consumer.batch.max-wait:500ms}")
+    private Duration batchMaxWait;
+
+    @Value("${payment.kafka.consumer.transactions.enabled:false}")
+    private boolean transactionsEnabled;
+
+    private final PaymentResponseRecordFilter recordFilter;
+    private final boolean virtualThreads;
+    private final MeterRegistry meterRegistry;
+    private final ConsumerStageMetrics stageMetrics;
+    private final KafkaTemplate<String, Object> retryKafkaTemplate;
+    private final ProducerFactory<String, CloudEvent> outcomeProducerFactory;
+
+    public KafkaConsumerConfig(PaymentResponseRecordFilter recordFilter, Environment environment,
+                               MeterRegistry meterRegistry, ConsumerStageMetrics stageMetrics,
+                               @Qualifier("retryKafkaTemplate") KafkaTemplate<String, Object> retryKafkaTemplate,
+                               @Qualifier("outcomeProducerFactory") ProducerFactory<String, CloudEvent> outcomeProducerFactory) {
+        this.recordFilter = recordFilter;
+        this.meterRegistry = meterRegistry;
+        this.stageMetrics = stageMetrics;
+        this.retryKafkaTemplate = retryKafkaTemplate;
+        this.outcomeProducerFactory = outcomeProducerFactory;
+        // Active with spring.threads.virtual.enabled=true (profile virtual-threads) on Java 21 or later
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
+        logger.info("Listener containers and workers run on {} threads", virtualThreads ? "virtual" : "platform");
+    }
+
+    /**
+     * The Kafka client metrics of every consumer, among them the lag per partition
+     * ({@code kafka.consumer.fetch.manager.records.lag}), are bound to the meter registry
+     */
     @Bean
     public ConsumerFactory<String, String> consumerFactory() {
-        Map<String, Object> configProps = new HashMap<>();
+        DefaultKafkaConsumerFactory<String, String> factory = new DefaultKafkaConsumerFactory<>(consumerProps(),
+            errorHandlingDeserializer(StringDeserializer::new), errorHandlingDeserializer(StringDeserializer::new));
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
+    }
 
-        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, "payment-service");
-        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    /**
+     * Consumer factory variant that hands the record value over as the raw bytes read from the broker,
+     * so the payload is never decoded into a String before it reaches the CloudEvent format.
+     */
+    @Bean
+    public ConsumerFactory<String, byte[]> byteArrayConsumerFactory() {
+        DefaultKafkaConsumerFactory<String, byte[]> factory = new DefaultKafkaConsumerFactory<>(consumerProps(),
+            errorHandlingDeserializer(StringDeserializer::new), errorHandlingDeserializer(ByteArrayDeserializer::new));
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
+    }
 
-        // Configure error handling deserializers
-        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        configProps.put(ErrorHandlingDeserializer.KEY_DESERIALIZER_CLASS, StringDeserializer.class);
-        configProps.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, StringDeserializer.class);
+    /**
+     * Worker lanes of the batch listener; in the virtual thread mode every lane of a poll runs on a new virtual
+     * thread instead of a pooled one
+     */
+    @Bean
+    public KeyOrderedDispatcher keyOrderedDispatcher() {
+        if (virtualThreads) {
+            return new KeyOrderedDispatcher(workers, new VirtualThreadTaskExecutor("payment-worker-"));
+        }
+        return new KeyOrderedDispatcher(workers);
+    }
 
-        return new DefaultKafkaConsumerFactory<>(configProps);
+    /**
+     * Attempts of the records failing in a transactional batch, given up after as many deliveries as the
+     * error handler makes
+     */
+    @Bean
+    public FailedRecordAttempts failedRecordAttempts() {
+        return new FailedRecordAttempts((int) RETRIES + 1);
     }
 
     @Bean
@@ -54,25 +173,186 @@ public class KafkaConsumerConfig {
         ConcurrentKafkaListenerContainerFactory<String, String> factory = 
             new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
-
-        // Configure error handler for processing errors (after successful deserialization)
-        DefaultErrorHandler errorHandler = new DefaultErrorHandler(
-            (consumerRecord, exception) -> {
-                logger.error("Error processing message from topic: {}, partition: {}, offset: {}, key: {}, error: {}", 
-                    consumerRecord.topic(),
-                    consumerRecord.partition(),
-                    consumerRecord.offset(),
-                    consumerRecord.key(),
-                    exception.getMessage(), exception);
-            },
-            new FixedBackOff(1000L, 3L) // Retry 3 times with 1 second delay
-        );
-
-        factory.setCommonErrorHandler(errorHandler);
+        factory.setCommonErrorHandler(errorHandler());
 
         // Configure container properties
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
+        factory.setAutoStartup(consumerMode == ConsumerMode.RECORD);
+        applyRecordFilter(factory);
+        applyThreading(factory);
+
+        return factory;
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setCommonErrorHandler(errorHandler());
+        factory.setBatchListener(true);
+
+        // Commit offsets once per poll instead of once per record
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.getContainerProperties().setKafkaConsumerProperties(batchConsumerProps());
+        factory.setAutoStartup(consumerMode == ConsumerMode.BATCH);
+        applyRecordFilter(factory);
+        applyThreading(factory);
+        applyTransactions(factory);
+
+        return factory;
+    }
+
+    /**
+     * Size of a poll, and so of an offset commit or transaction: at most {@code max-records} records, returned
+     * once {@code min-bytes} are available or {@code max-wait} has passed
+     */
+    private Properties batchConsumerProps() {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, batchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, (int) batchMaxWait.toMillis());
+        if (transactionsEnabled) {
+            // Skip records of aborted transactions, e.g. responses written by another consume-transform-produce stage
+            props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        }
+        return props;
+    }
+
+    /**
+     * Exactly once in the transactional mode: the container starts a Kafka transaction per poll, the payment outcomes
+     * the listener publishes join it, and the offsets of the poll are sent to it before it commits. If the listener
+     * fails, the transaction is aborted and the poll redelivered with 1 second delay. Poison pills, and records that
+     * fail on 4 deliveries, are published to the DLT by the listener within the transaction, see
+     * {@link FailedRecordAttempts}, so the other records of the poll commit with their outcomes and an aborted poll
+     * leaves nothing in the DLT; failures not tied to a record, such as an outcome that
+     * cannot be published, are redelivered until they succeed. Transactions require the batch mode.
+     */
+    private void applyTransactions(ConcurrentKafkaListenerContainerFactory<String, String> factory) {
+        if (!transactionsEnabled) {
+            return;
+        }
+        if (consumerMode != ConsumerMode.BATCH) {
+            // The outcome producer is transactional, so the record listeners could not publish outside a transaction
+            throw new IllegalStateException("payment.kafka.consumer.transactions.enabled requires "
+                + "payment.kafka.consumer.mode=batch, current mode: " + consumerMode.name().toLowerCase(Locale.ROOT));
+        }
+        // Synchronization lets the listener act once the transaction committed, and tell that it runs in one
+        KafkaTransactionManager<String, CloudEvent> transactionManager =
+            new KafkaTransactionManager<>(outcomeProducerFactory);
+        transactionManager.setTransactionSynchronization(
+            AbstractPlatformTransactionManager.SYNCHRONIZATION_ON_ACTUAL_TRANSACTION);
+        factory.getContainerProperties().setKafkaAwareTransactionManager(transactionManager);
+        // Without an error handler every failure rolls back; the error handler would commit the offsets before the
+        // failed record outside the transaction, without their outcomes
+        factory.setCommonErrorHandler(null);
+        factory.setAfterRollbackProcessor(new DefaultAfterRollbackProcessor<>(
+            new FixedBackOff(RETRY_INTERVAL_MS, FixedBackOff.UNLIMITED_ATTEMPTS)));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> byteArrayKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(byteArrayConsumerFactory());
+        factory.setCommonErrorHandler(errorHandler());
+
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
+        factory.setAutoStartup(consumerMode == ConsumerMode.BYTES);
+        applyRecordFilter(factory);
+        applyThreading(factory);
 
         return factory;
     }
+
+    /**
+     * Drop records by key and headers before the listener decodes the value; discarded records are still committed
+     */
+    private void applyRecordFilter(ConcurrentKafkaListenerContainerFactory<String, ?> factory) {
+        if (filterEnabled) {
+            factory.setRecordFilterStrategy(recordFilter);
+            factory.setAckDiscarded(true);
+        }
+    }
+
+    /**
+     * Run the consumer threads of the containers on virtual threads in the virtual thread mode,
+     * the same way Spring Boot configures its own listener container factory
+     */
+    private void applyThreading(ConcurrentKafkaListenerContainerFactory<String, ?> factory) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("payment-listener-");
+            executor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(executor);
+        }
+    }
+
+    private Map<String, Object> consumerProps() {
+        Map<String, Object> configProps = new HashMap<>();
+
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, "payment-service");
+        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+
+        return configProps;
+    }
+
+    /**
+     * Error handling deserializer around the given one, created per consumer. A failure is counted as
+     * {@link PaymentResponseFailure#DESERIALIZATION} and the value handed on as null, with the original bytes and the
+     * exception in a header. A record listener never sees such a record: its container passes the failure to the
+     * error handler, which publishes it to the DLT without retrying.
+     */
+    private <T> Supplier<Deserializer<T>> errorHandlingDeserializer(Supplier<Deserializer<T>> delegate) {
+        return () -> {
+            ErrorHandlingDeserializer<T> deserializer = new ErrorHandlingDeserializer<>(delegate.get());
+            deserializer.setFailedDeserializationFunction(info -> {
+                stageMetrics.failure(PaymentResponseFailure.DESERIALIZATION);
+                return null;
+            });
+            return deserializer;
+        };
+    }
+
+    /**
+     * Publishes failed payment responses to the DLT of the response topic, on the partition they were read from.
+     * The value is published as it was consumed, or as the original bytes if it failed deserialization; the error
+     * headers carry the exception, the original topic, partition and offset, and the
+     * {@link #FAILURE_CLASS_HEADER failure class}. With transactions it publishes through the transactional outcome
+     * producer, so a record the batch listener dead-letters is committed or aborted with the offsets of its poll.
+     */
+    @Bean
+    public DeadLetterPublishingRecoverer paymentResponseDeadLetterRecoverer() {
+        KafkaOperations<?, ?> template = transactionsEnabled
+            ? new KafkaTemplate<>(outcomeProducerFactory)
+            : retryKafkaTemplate;
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(template,
+            (record, exception) -> new TopicPartition(paymentResponseTopic + dltTopicSuffix, record.partition()));
+        recoverer.addHeadersFunction(KafkaConsumerConfig::failureClassHeaders);
+        recoverer.setLogRecoveryRecord(true);
+        return recoverer;
+    }
+
+    /**
+     * The {@link #FAILURE_CLASS_HEADER failure class} header for a record published to the DLT
+     */
+    static Headers failureClassHeaders(ConsumerRecord<?, ?> record, Exception exception) {
+        return new RecordHeaders().add(new RecordHeader(FAILURE_CLASS_HEADER,
+            PaymentResponseFailure.classify(exception).tagValue().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Error handler for failures the listener throws, and records the container cannot deserialize.
+     * Transient failures are retried 3 times with 1 second delay before the record is published to the DLT;
+     * poison pills and deserialization failures go to the DLT at once. In batch mode the listener reports the
+     * failed record via BatchListenerFailedException, so the records before it are committed and only the failed
+     * one is retried. A transactional batch container has no error handler, see
+     * {@link #applyTransactions(ConcurrentKafkaListenerContainerFactory)}.
+     */
+    private DefaultErrorHandler errorHandler() {
+        DefaultErrorHandler errorHandler =
+            new DefaultErrorHandler(paymentResponseDeadLetterRecoverer(), new FixedBackOff(RETRY_INTERVAL_MS, RETRIES));
+        errorHandler.addNotRetryableExceptions(PoisonPillException.class);
+        return errorHandler;
+    }
 }
@@ -4,44 +4,137 @@ import io.cloudevents.CloudEvent;
 import io.cloudevents.core.message.Encoding;
 import io.cloudevents.jackson.JsonFormat;
 import io.cloudevents.kafka.CloudEventSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
 
 import java.util.HashMap;
 import java.util.Map;
 
 @Configuration
+@EnableConfigurationProperties(ProducerProfileProperties.class)
 public class KafkaProducerConfig {
 
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${payment.kafka.producer.encoding:structured}")
+    private Encoding encoding;
+
+    @Value("${payment.kafka.consumer.transactions.enabled:false}")
+    private boolean transactionsEnabled;
+
+    @Value("${payment.kafka.consumer.transactions.transaction-id-prefix:payment-service-tx-}")
+    private String transactionIdPrefix;
+
+    private final ProducerProfileProperties producerProfiles;
+    private final MeterRegistry meterRegistry;
+
+    public KafkaProducerConfig(ProducerProfileProperties producerProfiles, MeterRegistry meterRegistry) {
+        this.producerProfiles = producerProfiles;
+        this.meterRegistry = meterRegistry;
+    }
+
     @Bean
     public ProducerFactory<String, CloudEvent> producerFactory() {
+        return cloudEventProducerFactory();
+    }
+
+    @Bean
+    public KafkaTemplate<String, CloudEvent> kafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory());
+    }
+
+    /**
+     * Producer factory of the payment outcome events the payment response listeners publish. It is transactional
+     * with payment.kafka.consumer.transactions.enabled=true, which requires the batch listener, so the outcomes of a
+     * poll are committed together with its offsets; otherwise it is a plain idempotent producer. In a transaction the
+     * failed payment responses of the poll are published to the DLT by the same producer, with their value as it was
+     * consumed, so its values are serialized by type.
+     */
+    @Bean
+    public ProducerFactory<String, CloudEvent> outcomeProducerFactory() {
+        DefaultKafkaProducerFactory<String, CloudEvent> factory = cloudEventProducerFactory();
+        if (transactionsEnabled) {
+            factory.setTransactionIdPrefix(transactionIdPrefix);
+            factory.setValueSerializerSupplier(KafkaProducerConfig::cloudEventOrConsumedValueSerializer);
+        }
+        return factory;
+    }
+
+    /**
+     * CloudEvents as configured for the factory, String and raw byte values as they are. The CloudEvent serializer
+     * is configured with the producer config when the producer is created.
+     */
+    @SuppressWarnings("unchecked")
+    private static Serializer<CloudEvent> cloudEventOrConsumedValueSerializer() {
+        Serializer<?> serializer = new DelegatingByTypeSerializer(Map.of(
+            CloudEvent.class, new CloudEventSerializer(),
+            String.class, new StringSerializer(),
+            byte[].class, new ByteArraySerializer()), true);
+        return (Serializer<CloudEvent>) serializer;
+    }
+
+    @Bean
+    public KafkaTemplate<String, CloudEvent> outcomeKafkaTemplate() {
+        return new KafkaTemplate<>(outcomeProducerFactory());
+    }
+
+    private DefaultKafkaProducerFactory<String, CloudEvent> cloudEventProducerFactory() {
         Map<String, Object> configProps = new HashMap<>();
 
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, CloudEventSerializer.class);
 
-        configProps.put(CloudEventSerializer.ENCODING_CONFIG, Encoding.STRUCTURED);
+        // Structured: whole event as JSON in the value, binary: attributes as ce_* headers and the data as the value
+        configProps.put(CloudEventSerializer.ENCODING_CONFIG, encoding);
         configProps.put(CloudEventSerializer.EVENT_FORMAT_CONFIG, JsonFormat.CONTENT_TYPE);
 
         // Essential reliability configurations
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
 
-        return new DefaultKafkaProducerFactory<>(configProps);
+        // Linger, batching, compression, buffer and in-flight settings of the selected profile
+        configProps.putAll(producerProfiles.producerConfig(producerProfiles.profile()));
+
+        DefaultKafkaProducerFactory<String, CloudEvent> factory = new DefaultKafkaProducerFactory<>(configProps);
+        // Kafka client metrics (kafka.producer.*) of the producer
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
     }
 
+    /**
+     * Template used to forward failed payment responses to the retry topics and the DLT. The record value is
+     * republished as it was consumed (String or raw bytes), so it is serialized by type, not as a CloudEvent.
+     */
     @Bean
-    public KafkaTemplate<String, CloudEvent> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    public KafkaTemplate<String, Object> retryKafkaTemplate() {
+        Map<String, Object> configProps = new HashMap<>();
+
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.putAll(producerProfiles.producerConfig(producerProfiles.retryProfile()));
+
+        DelegatingByTypeSerializer valueSerializer = new DelegatingByTypeSerializer(Map.of(
+            String.class, new StringSerializer(),
+            byte[].class, new ByteArraySerializer()));
+
+        DefaultKafkaProducerFactory<String, Object> factory =
+            new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), valueSerializer);
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return new KafkaTemplate<>(factory);
     }
 }
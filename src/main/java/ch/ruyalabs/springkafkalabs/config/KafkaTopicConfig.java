@@ -5,6 +5,10 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class KafkaTopicConfig {
@@ -15,6 +19,18 @@ public class KafkaTopicConfig {
     @Value("${payment.kafka.topics.response}")
     private String paymentResponseTopic;
 
+    @Value("${payment.kafka.topics.outcome:}")
+    private String paymentOutcomeTopic;
+
+    @Value("${payment.kafka.topics.retry.suffix:-retry}")
+    private String retryTopicSuffix;
+
+    @Value("${payment.kafka.topics.retry.dlt-suffix:-dlt}")
+    private String dltTopicSuffix;
+
+    @Value("${payment.kafka.topics.retry.attempts:4}")
+    private int retryAttempts;
+
     @Bean
     public NewTopic paymentRequestTopic() {
         return TopicBuilder.name(paymentRequestTopic)
@@ -30,4 +46,39 @@ public class KafkaTopicConfig {
                 .replicas(1)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Topic of the {@link ch.ruyalabs.springkafkalabs.kafka.producer.PaymentOutcomeProducer}, if one is configured
+     */
+    @Bean
+    public KafkaAdmin.NewTopics paymentOutcomeTopics() {
+        if (paymentOutcomeTopic.isBlank()) {
+            return new KafkaAdmin.NewTopics();
+        }
+        return new KafkaAdmin.NewTopics(TopicBuilder.name(paymentOutcomeTopic)
+                .partitions(3)
+                .replicas(1)
+                .build());
+    }
+
+    /**
+     * Retry topics and DLT of the payment response listeners, named the way
+     * {@link ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseRetryableTopic} expects them:
+     * one retry topic per retry, suffixed with its index, and a single DLT.
+     */
+    @Bean
+    public KafkaAdmin.NewTopics paymentResponseRetryTopics() {
+        List<NewTopic> topics = new ArrayList<>();
+        for (int i = 0; i < retryAttempts - 1; i++) {
+            topics.add(TopicBuilder.name(paymentResponseTopic + retryTopicSuffix + "-" + i)
+                    .partitions(3)
+                    .replicas(1)
+                    .build());
+        }
+        topics.add(TopicBuilder.name(paymentResponseTopic + dltTopicSuffix)
+                .partitions(3)
+                .replicas(1)
+                .build());
+        return new KafkaAdmin.NewTopics(topics.toArray(new NewTopic[0]));
+    }
+}
@@ -0,0 +1,78 @@
+package ch.ruyalabs.springkafkalabs.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named producer tuning profiles under {@code payment.kafka.producer.profiles}, and which profile each
+ * {@link org.springframework.kafka.core.KafkaTemplate} bean uses.
+ * <p>
+ * A profile sets linger, batch size, compression, buffer memory and in-flight requests together. Every profile
+ * keeps the producer idempotent (acks=all, at most 5 in-flight requests), so switching profiles never weakens the
+ * delivery guarantees; profiles that would are rejected at startup.
+ *
+ * @param profile      profile of the payment request template ({@code kafkaTemplate})
+ * @param retryProfile profile of the template forwarding failed responses to the retry topics and the DLT
+ * @param profiles     profile definitions by name
+ */
+@ConfigurationProperties(prefix = "payment.kafka.producer")
+public record ProducerProfileProperties(
+        String profile,
+        String retryProfile,
+        @DefaultValue Map<String, Profile> profiles) {
+
+    /**
+     * Upper bound of in-flight requests per connection for which the idempotent producer keeps ordering
+     */
+    static final int MAX_IDEMPOTENT_IN_FLIGHT = 5;
+
+    /**
+     * Producer settings of the profile with the given name; empty if {@code name} is blank (client defaults)
+     */
+    public Map<String, Object> producerConfig(String name) {
+        Map<String, Object> config = new HashMap<>();
+        if (name == null || name.isBlank()) {
+            return config;
+        }
+
+        Profile selected = profiles.get(name);
+        if (selected == null) {
+            throw new IllegalStateException("Unknown producer profile '" + name + "', configured profiles: "
+                + profiles.keySet());
+        }
+        selected.validate(name);
+
+        config.put(ProducerConfig.LINGER_MS_CONFIG, selected.lingerMs());
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, selected.batchSize());
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, selected.compressionType());
+        config.put(ProducerConfig.BUFFER_MEMORY_CONFIG, selected.bufferMemory());
+        config.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, selected.maxInFlight());
+        return config;
+    }
+
+    /**
+     * One tuning profile; unset values fall back to the Kafka client defaults
+     */
+    public record Profile(
+            @DefaultValue("0") int lingerMs,
+            @DefaultValue("16384") int batchSize,
+            @DefaultValue("none") String compressionType,
+            @DefaultValue("33554432") long bufferMemory,
+            @DefaultValue("5") int maxInFlight) {
+
+        void validate(String name) {
+            if (maxInFlight < 1 || maxInFlight > MAX_IDEMPOTENT_IN_FLIGHT) {
+                throw new IllegalStateException("Producer profile '" + name + "': max-in-flight must be between 1 and "
+                    + MAX_IDEMPOTENT_IN_FLIGHT + " to stay idempotent, got " + maxInFlight);
+            }
+            if (lingerMs < 0 || batchSize < 0 || bufferMemory < batchSize) {
+                throw new IllegalStateException("Producer profile '" + name + "': linger-ms and batch-size must not "
+                    + "be negative and buffer-memory must hold at least one batch");
+            }
+        }
+    }
+}
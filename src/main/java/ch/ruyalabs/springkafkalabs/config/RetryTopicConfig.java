@@ -0,0 +1,40 @@
+package ch.ruyalabs.springkafkalabs.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.retrytopic.DeadLetterPublishingRecovererFactory;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+import org.springframework.kafka.retrytopic.RetryTopicSchedulerWrapper;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.function.Consumer;
+
+/**
+ * Infrastructure of the retry topics used by
+ * {@link ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseRetryableTopic}.
+ * <p>
+ * Records that used up their retries are published to the DLT by the retry topic's own recoverer rather than by
+ * {@link KafkaConsumerConfig#paymentResponseDeadLetterRecoverer()}, so it is given the same
+ * {@link KafkaConsumerConfig#FAILURE_CLASS_HEADER failure class} header. The header is also added when a record is
+ * forwarded to the next retry topic; the last one is the class of the final failure.
+ */
+@Configuration
+public class RetryTopicConfig extends RetryTopicConfigurationSupport {
+
+    /**
+     * Resumes the retry topic partitions once their delay passed. Spring Kafka only registers one itself when the
+     * retry topic configuration is not customized.
+     */
+    @Bean
+    public RetryTopicSchedulerWrapper retryTopicSchedulerWrapper() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("retry-topic-");
+        return new RetryTopicSchedulerWrapper(scheduler);
+    }
+
+    @Override
+    protected Consumer<DeadLetterPublishingRecovererFactory> configureDeadLetterPublishingContainerFactory() {
+        return factory -> factory.setDeadLetterPublishingRecovererCustomizer(
+            recoverer -> recoverer.addHeadersFunction(KafkaConsumerConfig::failureClassHeaders));
+    }
+}
@@ -0,0 +1,33 @@
+package ch.ruyalabs.springkafkalabs.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of a bulk payment submission: aggregate counts plus one entry per submitted item, in request order
+ */
+public record BulkSubmissionResult(int total, int succeeded, int failed, List<ItemResult> items) {
+
+    static BulkSubmissionResult of(List<ItemResult> items) {
+        int succeeded = (int) items.stream().filter(ItemResult::sent).count();
+        return new BulkSubmissionResult(items.size(), succeeded, items.size() - succeeded, items);
+    }
+
+    /**
+     * Result of one item; partition and offset are set once the broker acknowledged the record, error otherwise
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ItemResult(int index, UUID disbursementId, boolean sent, Integer partition, Long offset,
+                             String error) {
+
+        static ItemResult sent(int index, UUID disbursementId, int partition, long offset) {
+            return new ItemResult(index, disbursementId, true, partition, offset, null);
+        }
+
+        static ItemResult failed(int index, UUID disbursementId, String error) {
+            return new ItemResult(index, disbursementId, false, null, null, error);
+        }
+    }
+}
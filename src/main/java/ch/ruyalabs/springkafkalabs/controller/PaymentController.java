@@ -1,19 +1,42 @@
 package ch.ruyalabs.springkafkalabs.controller;
 
+import ch.ruyalabs.springkafkalabs.kafka.correlation.CorrelationStoreFullException;
+import ch.ruyalabs.springkafkalabs.kafka.correlation.DuplicateCorrelationException;
+import ch.ruyalabs.springkafkalabs.kafka.producer.InFlightLimiter;
 import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentRequestProducer;
+import ch.ruyalabs.springkafkalabs.kafka.producer.ProducerSaturatedException;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusEntry;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusIndex;
+import ch.ruyalabs.springkafkalabs.controller.BulkSubmissionResult.ItemResult;
 import ch.ruyalabs.types.*;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.cloudevents.CloudEvent;
 import jakarta.servlet.http.HttpServletRequest;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/payment")
@@ -21,26 +44,192 @@ public class PaymentController {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentController.class);
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final PaymentRequestProducer paymentRequestProducer;
+    private final ObjectReader bulkRequestReader;
+    private final PaymentStatusIndex statusIndex;
+    private final RequestDiagnostics requestDiagnostics;
 
     @Autowired
-    public PaymentController(PaymentRequestProducer paymentRequestProducer) {
+    public PaymentController(PaymentRequestProducer paymentRequestProducer, ObjectMapper objectMapper,
+                             PaymentStatusIndex statusIndex, RequestDiagnostics requestDiagnostics) {
         this.paymentRequestProducer = paymentRequestProducer;
+        this.bulkRequestReader = objectMapper.readerFor(PaymentDisbursementRequest.class);
+        this.statusIndex = statusIndex;
+        this.requestDiagnostics = requestDiagnostics;
+    }
+
+    /**
+     * Latest payment status consumed for the disbursement, or 404 if no response arrived for it yet
+     */
+    @GetMapping("/{disbursementId}")
+    public ResponseEntity<PaymentStatusEntry> getPaymentStatus(@PathVariable UUID disbursementId) {
+        PaymentStatusEntry entry = statusIndex.get(disbursementId);
+        return entry != null ? ResponseEntity.ok(entry) : ResponseEntity.notFound().build();
     }
 
     @PostMapping("/trigger")
     public ResponseEntity<String> triggerPaymentRequest(HttpServletRequest httpRequest) {
         try {
-            logAllHttpHeaders(httpRequest);
+            requestDiagnostics.record(httpRequest);
 
             PaymentDisbursementRequest request = createDummyPaymentRequest();
             paymentRequestProducer.sendPaymentRequest(request);
             return ResponseEntity.ok("Payment request sent successfully with disbursementId: " + request.getDisbursementId());
+        } catch (ProducerSaturatedException e) {
+            return saturated(e).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Failed to send payment request: " + e.getMessage());
         }
     }
 
+    /**
+     * Variant of {@link #triggerPaymentRequest(HttpServletRequest)} for {@code ?await=true} that answers with the
+     * payment outcome (processed or failed) once the matching payment response was consumed. Answers 504 if no
+     * response arrives within {@code payment.kafka.correlation.timeout}, 503 if too many requests are awaited
+     * already and 409 if a response is already awaited for the disbursementId. The request thread is released while
+     * waiting.
+     */
+    @PostMapping(value = "/trigger", params = "await=true")
+    public CompletableFuture<ResponseEntity<PaymentOutcome>> triggerPaymentRequestAndAwait(HttpServletRequest httpRequest) {
+        requestDiagnostics.record(httpRequest);
+
+        PaymentDisbursementRequest request = createDummyPaymentRequest();
+        UUID disbursementId = request.getDisbursementId();
+        try {
+            return paymentRequestProducer.sendPaymentRequestAndAwaitResponse(request)
+                .handle((response, ex) -> {
+                    if (ex == null) {
+                        return ResponseEntity.ok(PaymentOutcome.of(response));
+                    }
+                    Throwable cause = unwrap(ex);
+                    HttpStatus status = cause instanceof TimeoutException
+                        ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.INTERNAL_SERVER_ERROR;
+                    return ResponseEntity.status(status).body(PaymentOutcome.failed(disbursementId, cause.getMessage()));
+                });
+        } catch (ProducerSaturatedException e) {
+            return CompletableFuture.completedFuture(
+                saturated(e).body(PaymentOutcome.failed(disbursementId, e.getMessage())));
+        } catch (CorrelationStoreFullException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(PaymentOutcome.failed(disbursementId, e.getMessage())));
+        } catch (DuplicateCorrelationException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(PaymentOutcome.failed(disbursementId, e.getMessage())));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError()
+                .body(PaymentOutcome.failed(disbursementId, e.getMessage())));
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #triggerPaymentRequest(HttpServletRequest)} that answers only after the broker
+     * acknowledged the record, with the partition and offset it was written to. The request thread is released
+     * while the send is outstanding; the response is written when the send future completes.
+     */
+    @PostMapping("/trigger/async")
+    public CompletableFuture<ResponseEntity<TriggerResult>> triggerPaymentRequestAsync(HttpServletRequest httpRequest) {
+        requestDiagnostics.record(httpRequest);
+
+        PaymentDisbursementRequest request = createDummyPaymentRequest();
+        try {
+            return paymentRequestProducer.sendPaymentRequestAsync(request)
+                .handle((sendResult, ex) -> {
+                    if (ex != null) {
+                        return ResponseEntity.internalServerError()
+                            .body(TriggerResult.failed(request.getDisbursementId(), unwrap(ex).getMessage()));
+                    }
+                    RecordMetadata metadata = sendResult.getRecordMetadata();
+                    return ResponseEntity.ok(TriggerResult.acknowledged(request.getDisbursementId(),
+                        metadata.topic(), metadata.partition(), metadata.offset()));
+                });
+        } catch (ProducerSaturatedException e) {
+            return CompletableFuture.completedFuture(
+                saturated(e).body(TriggerResult.failed(request.getDisbursementId(), e.getMessage())));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError()
+                .body(TriggerResult.failed(request.getDisbursementId(), e.getMessage())));
+        }
+    }
+
+    /**
+     * Submit many payment requests in one call, as NDJSON (one request per line) or as a JSON array.
+     * The body is parsed one request at a time and each request is sent as soon as it is read, so sends are
+     * pipelined and the body is never held in memory. The response is returned once every send was acknowledged
+     * or failed: 200 if all requests were sent, 207 if some failed, 400 if the body is not JSON. When the in-flight
+     * limit is reached, reading the body pauses until a send completes, whatever the limit policy.
+     */
+    @PostMapping(value = "/bulk", consumes = {NDJSON, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<BulkSubmissionResult> submitBulkPaymentRequests(HttpServletRequest httpRequest) {
+        requestDiagnostics.record(httpRequest);
+        List<CompletableFuture<ItemResult>> pending = new ArrayList<>();
+
+        // readValues unwraps a top level JSON array and otherwise reads whitespace separated values (NDJSON)
+        try (MappingIterator<PaymentDisbursementRequest> requests =
+                 bulkRequestReader.readValues(httpRequest.getInputStream())) {
+            while (requests.hasNextValue()) {
+                pending.add(send(pending.size(), requests.nextValue()));
+            }
+        } catch (IOException e) {
+            if (pending.isEmpty()) {
+                logger.error("Bulk payment request body is not valid JSON: {}", e.getMessage());
+                return ResponseEntity.badRequest().build();
+            }
+            // The parser cannot resynchronize reliably after a broken item, so reading stops here
+            pending.add(CompletableFuture.completedFuture(
+                ItemResult.failed(pending.size(), null, "Malformed request: " + e.getMessage())));
+        }
+
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        BulkSubmissionResult result = BulkSubmissionResult.of(pending.stream().map(CompletableFuture::join).toList());
+
+        logger.info("Bulk payment submission finished: {} total, {} sent, {} failed",
+                   result.total(), result.succeeded(), result.failed());
+        return ResponseEntity.status(result.failed() == 0 ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(result);
+    }
+
+    private CompletableFuture<ItemResult> send(int index, PaymentDisbursementRequest request) {
+        UUID disbursementId = request.getDisbursementId();
+        if (disbursementId == null) {
+            return CompletableFuture.completedFuture(ItemResult.failed(index, null, "Missing disbursementId"));
+        }
+
+        try {
+            return paymentRequestProducer.sendPaymentRequestAsyncWhenFree(request)
+                .handle((sendResult, ex) -> toItemResult(index, disbursementId, sendResult, ex));
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(ItemResult.failed(index, disbursementId, e.getMessage()));
+        }
+    }
+
+    private ItemResult toItemResult(int index, UUID disbursementId, SendResult<String, CloudEvent> sendResult,
+                                    Throwable ex) {
+        if (ex != null) {
+            return ItemResult.failed(index, disbursementId, unwrap(ex).getMessage());
+        }
+        RecordMetadata metadata = sendResult.getRecordMetadata();
+        return ItemResult.sent(index, disbursementId, metadata.partition(), metadata.offset());
+    }
+
+    /**
+     * 429 if the send was rejected right away, 503 if it waited for a free slot and timed out; both tell the
+     * client when to retry
+     */
+    private static ResponseEntity.BodyBuilder saturated(ProducerSaturatedException e) {
+        HttpStatus status = e.getPolicy() == InFlightLimiter.Policy.WAIT
+            ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.TOO_MANY_REQUESTS;
+        long retryAfterSeconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    }
+
+    /**
+     * The actual send failure behind the CompletionException of a dependent future
+     */
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
     private PaymentDisbursementRequest createDummyPaymentRequest() {
         PaymentDisbursementRequest request = new PaymentDisbursementRequest();
 
@@ -73,19 +262,4 @@ public class PaymentController {
 
         return request;
     }
-
-    private void logAllHttpHeaders(HttpServletRequest httpRequest) {
-        logger.info("HTTP request headers for endpoint: {} {}", httpRequest.getMethod(), httpRequest.getRequestURI());
-
-        Collections.list(httpRequest.getHeaderNames()).forEach(headerName -> {
-            Collections.list(httpRequest.getHeaders(headerName)).forEach(headerValue -> {
-                logger.info("HTTP Header - Key: {}, Value: {}", headerName, headerValue);
-            });
-        });
-
-        logger.info("Request Info - Remote Address: {}, User Agent: {}, Content Type: {}",
-                   httpRequest.getRemoteAddr(), 
-                   httpRequest.getHeader("User-Agent"), 
-                   httpRequest.getContentType());
-    }
 }
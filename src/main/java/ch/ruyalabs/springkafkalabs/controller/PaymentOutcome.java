@@ -0,0 +1,23 @@
+package ch.ruyalabs.springkafkalabs.controller;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.UUID;
+
+/**
+ * Payment response awaited by a trigger with {@code await=true}, or why none arrived
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PaymentOutcome(UUID disbursementId, String status, String transactionId, String failureReason,
+                             String error) {
+
+    static PaymentOutcome of(PaymentDisbursementResponse response) {
+        return new PaymentOutcome(response.getDisbursementId(), response.getStatus().value(),
+            response.getTransactionId(), response.getFailureReason(), null);
+    }
+
+    static PaymentOutcome failed(UUID disbursementId, String error) {
+        return new PaymentOutcome(disbursementId, null, null, null, error);
+    }
+}
@@ -0,0 +1,137 @@
+package ch.ruyalabs.springkafkalabs.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Logs a sample of the incoming payment requests with their headers, as one structured log event per request.
+ * <p>
+ * A request is sampled at random with a probability of 1 in {@code sample-rate}, or always if it carries the
+ * {@code sample-header} ({@code name}, or {@code name=value} to also match the value). Headers are filtered by
+ * {@code allowed-headers} (empty allows all) and {@code denied-headers}; the values of {@code redacted-headers} are
+ * replaced. The event is written by the logger of this class, which {@code logback-spring.xml} routes to an
+ * asynchronous appender, so request threads do not wait for the log output. Deciding not to sample a request
+ * allocates nothing.
+ */
+@Component
+public class RequestDiagnostics {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestDiagnostics.class);
+
+    static final String REDACTED = "[REDACTED]";
+
+    private final boolean enabled;
+    private final int sampleRate;
+    private final String sampleHeaderName;
+    private final String sampleHeaderValue;
+    private final Set<String> allowedHeaders;
+    private final Set<String> deniedHeaders;
+    private final Set<String> redactedHeaders;
+
+    public RequestDiagnostics(@Value("${payment.diagnostics.requests.enabled:true}") boolean enabled,
+                              @Value("${payment.diagnostics.requests.sample-rate:100}") int sampleRate,
+                              @Value("${payment.diagnostics.requests.sample-header:}") String sampleHeader,
+                              @Value("${payment.diagnostics.requests.allowed-headers:}") List<String> allowedHeaders,
+                              @Value("${payment.diagnostics.requests.denied-headers:cookie,set-cookie}") List<String> deniedHeaders,
+                              @Value("${payment.diagnostics.requests.redacted-headers:authorization,proxy-authorization,x-api-key}") List<String> redactedHeaders) {
+        if (sampleRate < 0) {
+            throw new IllegalArgumentException("Sample rate must not be negative: " + sampleRate);
+        }
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        int separator = sampleHeader.indexOf('=');
+        this.sampleHeaderName = emptyToNull(separator < 0 ? sampleHeader.trim() : sampleHeader.substring(0, separator).trim());
+        this.sampleHeaderValue = separator < 0 ? null : sampleHeader.substring(separator + 1).trim();
+        this.allowedHeaders = headerNames(allowedHeaders);
+        this.deniedHeaders = headerNames(deniedHeaders);
+        this.redactedHeaders = headerNames(redactedHeaders);
+    }
+
+    /**
+     * Log the request if it is sampled
+     */
+    public void record(HttpServletRequest request) {
+        String sampledBy = sampledBy(request);
+        if (sampledBy == null || !logger.isInfoEnabled()) {
+            return;
+        }
+        logger.atInfo()
+            .setMessage("HTTP request")
+            .addKeyValue("method", request.getMethod())
+            .addKeyValue("uri", request.getRequestURI())
+            .addKeyValue("remoteAddress", request.getRemoteAddr())
+            .addKeyValue("contentType", request.getContentType())
+            .addKeyValue("sampledBy", sampledBy)
+            .addKeyValue("headers", headers(request))
+            .log();
+    }
+
+    /**
+     * {@code "header"} or {@code "rate"} if the request is sampled, {@code null} otherwise
+     */
+    String sampledBy(HttpServletRequest request) {
+        if (!enabled) {
+            return null;
+        }
+        if (sampleHeaderName != null && matchesSampleHeader(request)) {
+            return "header";
+        }
+        if (sampleRate == 1 || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) == 0)) {
+            return "rate";
+        }
+        return null;
+    }
+
+    /**
+     * Allowed headers of the request by lower case name, several values of a header joined by a comma
+     */
+    Map<String, String> headers(HttpServletRequest request) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        Enumeration<String> names = request.getHeaderNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement().toLowerCase(Locale.ROOT);
+            if (deniedHeaders.contains(name) || (!allowedHeaders.isEmpty() && !allowedHeaders.contains(name))) {
+                continue;
+            }
+            if (redactedHeaders.contains(name)) {
+                headers.put(name, REDACTED);
+                continue;
+            }
+            Enumeration<String> values = request.getHeaders(name);
+            String value = values.hasMoreElements() ? values.nextElement() : "";
+            while (values.hasMoreElements()) {
+                value = value + ", " + values.nextElement();
+            }
+            headers.put(name, value);
+        }
+        return headers;
+    }
+
+    private boolean matchesSampleHeader(HttpServletRequest request) {
+        String value = request.getHeader(sampleHeaderName);
+        return value != null && (sampleHeaderValue == null || sampleHeaderValue.equalsIgnoreCase(value.trim()));
+    }
+
+    private static Set<String> headerNames(List<String> names) {
+        return names.stream()
+            .map(name -> name.trim().toLowerCase(Locale.ROOT))
+            .filter(name -> !name.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,21 @@
+package ch.ruyalabs.springkafkalabs.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.UUID;
+
+/**
+ * Outcome of an acknowledged trigger: where the payment request was written, or why it could not be sent
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TriggerResult(UUID disbursementId, boolean acknowledged, String topic, Integer partition, Long offset,
+                            String error) {
+
+    static TriggerResult acknowledged(UUID disbursementId, String topic, int partition, long offset) {
+        return new TriggerResult(disbursementId, true, topic, partition, offset, null);
+    }
+
+    static TriggerResult failed(UUID disbursementId, String error) {
+        return new TriggerResult(disbursementId, false, null, null, null, error);
+    }
+}
@@ -0,0 +1,169 @@
+package ch.ruyalabs.springkafkalabs.jfr;
+
+import jdk.jfr.Timespan;
+import jdk.jfr.ValueDescriptor;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Turns a Flight Recorder recording into latency percentiles per payment event and stage, and lists the slowest
+ * events with all their fields, to find out which stage the tail latency comes from.
+ * <p>
+ * Every event named {@code ch.ruyalabs.payment.*} is read. The event duration is reported as stage {@code total},
+ * every {@link Timespan} field as a stage of its own; stages an event did not reach (0) are left out. Run after
+ * {@code mvn compile} with:
+ * <pre>
+ * java -cp target/classes ch.ruyalabs.springkafkalabs.jfr.PaymentRecordingAnalyzer payment.jfr [slowest]
+ * </pre>
+ */
+public final class PaymentRecordingAnalyzer {
+
+    static final String EVENT_PREFIX = "ch.ruyalabs.payment.";
+
+    private static final String TOTAL = "total";
+
+    private static final String DURATION_FIELD = "duration";
+
+    private static final int DEFAULT_SLOWEST = 10;
+
+    private PaymentRecordingAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: PaymentRecordingAnalyzer <recording.jfr> [slowest events to list]");
+            System.exit(2);
+        }
+        int slowest = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SLOWEST;
+        print(analyze(Path.of(args[0]), slowest), System.out);
+    }
+
+    /**
+     * Read the recording in a single pass, keeping the durations per stage and the {@code slowest} events
+     */
+    public static Report analyze(Path recording, int slowest) throws IOException {
+        Map<String, Map<String, LongList>> durations = new LinkedHashMap<>();
+        PriorityQueue<RecordedEvent> slowestEvents = new PriorityQueue<>(Comparator.comparing(RecordedEvent::getDuration));
+
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String name = event.getEventType().getName();
+                if (!name.startsWith(EVENT_PREFIX)) {
+                    continue;
+                }
+                Map<String, LongList> stages = durations.computeIfAbsent(name, key -> new LinkedHashMap<>());
+                stages.computeIfAbsent(TOTAL, key -> new LongList()).add(event.getDuration().toNanos());
+                for (ValueDescriptor field : event.getFields()) {
+                    // The duration field of every event is already reported as the total
+                    if (field.getAnnotation(Timespan.class) != null && !DURATION_FIELD.equals(field.getName())) {
+                        long nanos = event.getLong(field.getName());
+                        if (nanos > 0) {
+                            stages.computeIfAbsent(stageName(field), key -> new LongList()).add(nanos);
+                        }
+                    }
+                }
+                if (slowest > 0) {
+                    slowestEvents.add(event);
+                    if (slowestEvents.size() > slowest) {
+                        slowestEvents.poll();
+                    }
+                }
+            }
+        }
+
+        List<StageLatency> stages = new ArrayList<>();
+        durations.forEach((event, byStage) -> byStage.forEach((stage, values) ->
+            stages.add(StageLatency.of(event, stage, values.sorted()))));
+        List<RecordedEvent> slowestSorted = new ArrayList<>(slowestEvents);
+        slowestSorted.sort(Comparator.comparing(RecordedEvent::getDuration, Comparator.reverseOrder()));
+        return new Report(stages, slowestSorted);
+    }
+
+    static void print(Report report, PrintStream out) {
+        if (report.stages().isEmpty()) {
+            out.println("No " + EVENT_PREFIX + "* events in the recording; was it started with the payment settings?");
+            return;
+        }
+        out.printf("%-40s %-24s %9s %11s %11s %11s %11s %11s%n",
+            "Event", "Stage", "Count", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for (StageLatency stage : report.stages()) {
+            out.printf("%-40s %-24s %9d %11.1f %11.1f %11.1f %11.1f %11.1f%n",
+                stage.event(), stage.stage(), stage.count(), micros(stage.p50()), micros(stage.p90()),
+                micros(stage.p99()), micros(stage.p999()), micros(stage.max()));
+        }
+        if (!report.slowest().isEmpty()) {
+            out.println();
+            out.println("Slowest events:");
+            for (RecordedEvent event : report.slowest()) {
+                out.println(event);
+            }
+        }
+    }
+
+    private static String stageName(ValueDescriptor field) {
+        return field.getLabel() != null ? field.getLabel() : field.getName();
+    }
+
+    private static double micros(Duration duration) {
+        return duration.toNanos() / 1_000.0;
+    }
+
+    /**
+     * Latency percentiles of one stage of one event type
+     */
+    public record StageLatency(String event, String stage, int count, Duration p50, Duration p90, Duration p99,
+                               Duration p999, Duration max) {
+
+        static StageLatency of(String event, String stage, long[] sortedNanos) {
+            return new StageLatency(event, stage, sortedNanos.length, percentile(sortedNanos, 50),
+                percentile(sortedNanos, 90), percentile(sortedNanos, 99), percentile(sortedNanos, 99.9),
+                Duration.ofNanos(sortedNanos[sortedNanos.length - 1]));
+        }
+
+        /**
+         * Nearest rank percentile
+         */
+        private static Duration percentile(long[] sortedNanos, double percentile) {
+            int rank = (int) Math.ceil(percentile / 100 * sortedNanos.length);
+            return Duration.ofNanos(sortedNanos[Math.max(rank, 1) - 1]);
+        }
+    }
+
+    public record Report(List<StageLatency> stages, List<RecordedEvent> slowest) {
+    }
+
+    /**
+     * Growable list of primitive longs, so large recordings are not boxed
+     */
+    private static final class LongList {
+
+        private long[] values = new long[256];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Validates CloudEvent attributes against rules compiled once at startup from the CloudEvent response schema.
+ * <p>
+ * The {@code const}, {@code enum}, {@code minLength} and {@code required} keywords of the schema properties are
+ * turned into a fixed chain of rules. A single allowed value is compared with {@code equals}, multiple allowed
+ * values are looked up in hash sets, so validating an event takes a few comparisons and no parsing. Allowed sources
+ * can be extended with {@code payment.kafka.consumer.validation.additional-sources}, and a different schema can be
+ * configured with {@code payment.kafka.consumer.validation.schema}.
+ */
+@Component
+public class CloudEventAttributeValidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudEventAttributeValidator.class);
+
+    /**
+     * Accessors for the attributes that can be validated by value; all of them return cached Strings
+     */
+    private static final Map<String, Function<CloudEvent, String>> ATTRIBUTES = Map.of(
+        "specversion", event -> event.getSpecVersion().toString(),
+        "type", CloudEvent::getType,
+        "source", event -> uriToString(event.getSource()),
+        "id", CloudEvent::getId,
+        "datacontenttype", CloudEvent::getDataContentType,
+        "dataschema", event -> uriToString(event.getDataSchema()),
+        "subject", CloudEvent::getSubject
+    );
+
+    private final List<Rule> rules;
+    private final Set<String> allowedTypes;
+    private final Set<String> allowedSources;
+
+    public CloudEventAttributeValidator(
+            @Value("${payment.kafka.consumer.validation.schema:classpath:json/schema/cloudevent-response-schema.json}")
+            Resource schema,
+            @Value("${payment.kafka.consumer.validation.additional-sources:}") List<String> additionalSources) {
+        JsonNode schemaNode = readSchema(schema);
+        JsonNode properties = schemaNode.path("properties");
+        Set<String> required = new HashSet<>();
+        schemaNode.path("required").forEach(node -> required.add(node.asText()));
+
+        Map<String, Set<String>> allowedValues = new HashMap<>();
+        properties.fields().forEachRemaining(property -> {
+            Set<String> values = allowedValues(property.getValue());
+            if (!values.isEmpty()) {
+                allowedValues.put(property.getKey(), values);
+            }
+        });
+        if (additionalSources != null && !additionalSources.isEmpty()) {
+            allowedValues.computeIfAbsent("source", key -> new LinkedHashSet<>()).addAll(additionalSources);
+        }
+
+        List<Rule> compiled = new ArrayList<>();
+        properties.fields().forEachRemaining(property -> {
+            String attribute = property.getKey();
+            JsonNode definition = property.getValue();
+            boolean isRequired = required.contains(attribute);
+
+            if ("data".equals(attribute)) {
+                if (isRequired) {
+                    compiled.add(new Rule("data", "a value", event -> event.getData() != null ? null : "null"));
+                }
+                return;
+            }
+
+            Function<CloudEvent, String> accessor = ATTRIBUTES.get(attribute);
+            if (accessor == null) {
+                return;
+            }
+            if (allowedValues.containsKey(attribute)) {
+                compiled.add(valueRule(attribute, accessor, allowedValues.get(attribute), isRequired));
+            }
+            if (definition.has("minLength")) {
+                compiled.add(minLengthRule(attribute, accessor, definition.get("minLength").asInt(), isRequired));
+            } else if (isRequired && !allowedValues.containsKey(attribute)) {
+                compiled.add(new Rule(attribute, "a value",
+                    event -> accessor.apply(event) != null ? null : "null"));
+            }
+        });
+
+        this.rules = List.copyOf(compiled);
+        this.allowedTypes = Collections.unmodifiableSet(allowedValues.getOrDefault("type", Set.of()));
+        this.allowedSources = Collections.unmodifiableSet(allowedValues.getOrDefault("source", Set.of()));
+
+        logger.info("Compiled {} CloudEvent attribute rules from {}, allowed types: {}, allowed sources: {}",
+            rules.size(), schema.getDescription(), allowedTypes, allowedSources);
+    }
+
+    /**
+     * Validate cloud event attributes against the compiled rules, logging the first violation
+     */
+    public boolean validate(CloudEvent cloudEvent) {
+        for (Rule rule : rules) {
+            String violation = rule.check.apply(cloudEvent);
+            if (violation != null) {
+                logger.error("Invalid {}: expected {}, got '{}'", rule.attribute, rule.expectation, violation);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Allowed CloudEvent types; empty if the schema does not restrict the type
+     */
+    public Set<String> getAllowedTypes() {
+        return allowedTypes;
+    }
+
+    /**
+     * Allowed CloudEvent sources; empty if the schema does not restrict the source
+     */
+    public Set<String> getAllowedSources() {
+        return allowedSources;
+    }
+
+    private static Rule valueRule(String attribute, Function<CloudEvent, String> accessor,
+                                  Set<String> allowed, boolean required) {
+        String expectation = allowed.size() == 1
+            ? "'" + allowed.iterator().next() + "'"
+            : "one of " + allowed;
+
+        if (allowed.size() == 1) {
+            String expected = allowed.iterator().next();
+            return new Rule(attribute, expectation, event -> {
+                String actual = accessor.apply(event);
+                if (actual == null) {
+                    return required ? "null" : null;
+                }
+                return expected.equals(actual) ? null : actual;
+            });
+        }
+
+        Set<String> allowedSet = Set.copyOf(allowed);
+        return new Rule(attribute, expectation, event -> {
+            String actual = accessor.apply(event);
+            if (actual == null) {
+                return required ? "null" : null;
+            }
+            return allowedSet.contains(actual) ? null : actual;
+        });
+    }
+
+    private static Rule minLengthRule(String attribute, Function<CloudEvent, String> accessor,
+                                      int minLength, boolean required) {
+        // Whitespace only values never count as present
+        return new Rule(attribute, "at least " + minLength + " non-blank character(s)", event -> {
+            String actual = accessor.apply(event);
+            if (actual == null) {
+                return required ? "null" : null;
+            }
+            return actual.length() >= minLength && !actual.isBlank() ? null : actual;
+        });
+    }
+
+    private static Set<String> allowedValues(JsonNode definition) {
+        Set<String> values = new LinkedHashSet<>();
+        if (definition.has("const")) {
+            values.add(definition.get("const").asText());
+        }
+        definition.path("enum").forEach(node -> values.add(node.asText()));
+        return values;
+    }
+
+    private static JsonNode readSchema(Resource schema) {
+        try (InputStream inputStream = schema.getInputStream()) {
+            return new ObjectMapper().readTree(inputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read CloudEvent schema " + schema.getDescription(), e);
+        }
+    }
+
+    private static String uriToString(URI uri) {
+        return uri != null ? uri.toString() : null;
+    }
+
+    /**
+     * A compiled rule; {@code check} returns the offending value, or {@code null} if the event satisfies the rule
+     */
+    private record Rule(String attribute, String expectation, Function<CloudEvent, String> check) {
+    }
+}
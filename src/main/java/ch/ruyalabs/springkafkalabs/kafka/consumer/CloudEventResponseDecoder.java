@@ -0,0 +1,152 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.SpecVersion;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.data.PojoCloudEventData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.OffsetDateTime;
+
+/**
+ * Single pass decoder from a structured mode CloudEvent (JSON) to a CloudEvent carrying a
+ * {@link PaymentDisbursementResponse}.
+ * <p>
+ * The envelope attributes are read from the Jackson token stream and the {@code data} object is bound straight into
+ * the generated class from the same stream, so the payload is parsed once and no intermediate tree or data byte copy
+ * is created. The data of the returned event is a {@link PojoCloudEventData} holding the bound response.
+ * <p>
+ * Anything outside the standard shape (spec versions other than 1.0, {@code data_base64}, non-object data, non-JSON
+ * data content types, malformed input) is not decoded here: {@link #decode(byte[])} returns {@code null} and the
+ * caller falls back to the generic {@link io.cloudevents.core.format.EventFormat}, which reports the actual error.
+ */
+public class CloudEventResponseDecoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudEventResponseDecoder.class);
+
+    private static final String SPEC_VERSION_1_0 = "1.0";
+
+    private final ObjectMapper objectMapper;
+
+    public CloudEventResponseDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Decode the structured CloudEvent, or return {@code null} if the payload needs the generic EventFormat
+     */
+    public CloudEvent decode(byte[] payload) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            return decode(parser);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Streaming CloudEvent decode not possible, falling back to EventFormat: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private CloudEvent decode(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+
+        CloudEventBuilder builder = CloudEventBuilder.v1();
+        boolean specVersionPresent = false;
+        String dataContentType = null;
+        PaymentDisbursementResponse data = null;
+
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+
+            if ("data".equals(fieldName)) {
+                if (token != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                data = objectMapper.readValue(parser, PaymentDisbursementResponse.class);
+                continue;
+            }
+
+            if (token != JsonToken.VALUE_STRING) {
+                if (!isExtensionValue(fieldName, token)) {
+                    return null;
+                }
+                builder = withNonStringExtension(builder, fieldName, parser, token);
+                continue;
+            }
+
+            String value = parser.getText();
+            switch (fieldName) {
+                case "specversion":
+                    if (!SPEC_VERSION_1_0.equals(value)) {
+                        return null;
+                    }
+                    specVersionPresent = true;
+                    break;
+                case "id":
+                    builder.withId(value);
+                    break;
+                case "source":
+                    builder.withSource(URI.create(value));
+                    break;
+                case "type":
+                    builder.withType(value);
+                    break;
+                case "datacontenttype":
+                    dataContentType = value;
+                    builder.withDataContentType(value);
+                    break;
+                case "dataschema":
+                    builder.withDataSchema(URI.create(value));
+                    break;
+                case "subject":
+                    builder.withSubject(value);
+                    break;
+                case "time":
+                    builder.withTime(OffsetDateTime.parse(value));
+                    break;
+                case "data_base64":
+                    return null;
+                default:
+                    builder.withExtension(fieldName, value);
+            }
+        }
+
+        if (!specVersionPresent || (data != null && dataContentType != null && !isJson(dataContentType))) {
+            return null;
+        }
+
+        if (data != null) {
+            builder.withData(PojoCloudEventData.wrap(data, objectMapper::writeValueAsBytes));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Integer and boolean extensions are decoded here; context attributes are always strings in the JSON format
+     */
+    private boolean isExtensionValue(String fieldName, JsonToken token) {
+        if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_TRUE && token != JsonToken.VALUE_FALSE) {
+            return false;
+        }
+        return !SpecVersion.V1.getAllAttributes().contains(fieldName) && !"data_base64".equals(fieldName);
+    }
+
+    private CloudEventBuilder withNonStringExtension(CloudEventBuilder builder, String fieldName,
+                                                     JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return builder.withExtension(fieldName, parser.getIntValue());
+        }
+        return builder.withExtension(fieldName, token == JsonToken.VALUE_TRUE);
+    }
+
+    private boolean isJson(String contentType) {
+        return contentType.startsWith("application/json") || contentType.contains("+json");
+    }
+}
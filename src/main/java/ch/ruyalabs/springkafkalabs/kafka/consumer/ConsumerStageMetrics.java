@@ -0,0 +1,148 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the {@link PaymentResponseConsumer} pipeline.
+ * <p>
+ * {@code payment.consumer.stage} times each stage of a record (structured mode check, deserialization, attribute
+ * validation, data mapping, processing) and {@code payment.consumer.record} the whole record, both tagged with
+ * {@code topic}, {@code partition}, {@code outcome} and the payment {@code status} ({@code none} before it is known).
+ * Timers are looked up once per tag combination and cached, so a measurement costs two {@link System#nanoTime()}
+ * calls and a map lookup. Percentile histograms can be enabled per meter with
+ * {@code management.metrics.distribution.percentiles-histogram}.
+ * <p>
+ * {@code payment.consumer.failures} counts failed records by {@link PaymentResponseFailure} class, tagged
+ * {@code class} and {@code retryable}.
+ */
+@Component
+public class ConsumerStageMetrics {
+
+    public enum Stage {
+        STRUCTURED_MODE,
+        DESERIALIZE,
+        VALIDATE,
+        MAP,
+        PROCESS
+    }
+
+    /**
+     * Outcome of a stage: passed, rejected the record (which is then dead-lettered), or threw
+     */
+    public enum StageOutcome {
+        SUCCESS,
+        REJECTED,
+        ERROR
+    }
+
+    /**
+     * Outcome of a whole record
+     */
+    public enum RecordOutcome {
+        PROCESSED,
+        DUPLICATE,
+        DEAD_LETTERED,
+        ERROR
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<StageKey, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<RecordKey, Timer> recordTimers = new ConcurrentHashMap<>();
+    private final Map<PaymentResponseFailure, Counter> failureCounters = new EnumMap<>(PaymentResponseFailure.class);
+
+    public ConsumerStageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (PaymentResponseFailure failure : PaymentResponseFailure.values()) {
+            failureCounters.put(failure, Counter.builder("payment.consumer.failures")
+                .description("Payment response records that failed, by failure class")
+                .tag("class", failure.tagValue())
+                .tag("retryable", Boolean.toString(failure.retryable()))
+                .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Record the time of a stage that started at {@code startNanos} (a {@link System#nanoTime()} value)
+     *
+     * @return the time of the stage in nanoseconds
+     */
+    public long stage(Stage stage, ConsumerRecord<?, ?> record, StageOutcome outcome,
+                      PaymentDisbursementResponse.Status status, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        stageTimers.computeIfAbsent(new StageKey(stage, record.topic(), record.partition(), outcome, status),
+                this::stageTimer)
+            .record(elapsed, TimeUnit.NANOSECONDS);
+        return elapsed;
+    }
+
+    public long stage(Stage stage, ConsumerRecord<?, ?> record, boolean passed, long startNanos) {
+        return stage(stage, record, passed ? StageOutcome.SUCCESS : StageOutcome.REJECTED, null, startNanos);
+    }
+
+    /**
+     * Record the time of a whole record that started at {@code startNanos} (a {@link System#nanoTime()} value)
+     */
+    public void record(ConsumerRecord<?, ?> record, RecordOutcome outcome, PaymentDisbursementResponse.Status status,
+                       long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        recordTimers.computeIfAbsent(new RecordKey(record.topic(), record.partition(), outcome, status),
+                this::recordTimer)
+            .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Count a failed record
+     */
+    public void failure(PaymentResponseFailure failure) {
+        failureCounters.get(failure).increment();
+    }
+
+    private Timer stageTimer(StageKey key) {
+        return Timer.builder("payment.consumer.stage")
+            .description("Time spent in a stage of the payment response consumer")
+            .tag("stage", tagValue(key.stage()))
+            .tag("topic", key.topic())
+            .tag("partition", Integer.toString(key.partition()))
+            .tag("outcome", tagValue(key.outcome()))
+            .tag("status", statusTag(key.status()))
+            .register(meterRegistry);
+    }
+
+    private Timer recordTimer(RecordKey key) {
+        return Timer.builder("payment.consumer.record")
+            .description("Time spent on a payment response record, from the duplicate check to processing")
+            .tag("topic", key.topic())
+            .tag("partition", Integer.toString(key.partition()))
+            .tag("outcome", tagValue(key.outcome()))
+            .tag("status", statusTag(key.status()))
+            .register(meterRegistry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    // Every timer of a name needs the same tag keys, so a missing status is tagged too
+    private static String statusTag(PaymentDisbursementResponse.Status status) {
+        return status != null ? status.value() : "none";
+    }
+
+    private record StageKey(Stage stage, String topic, int partition, StageOutcome outcome,
+                            PaymentDisbursementResponse.Status status) {
+    }
+
+    private record RecordKey(String topic, int partition, RecordOutcome outcome,
+                             PaymentDisbursementResponse.Status status) {
+    }
+}
@@ -0,0 +1,131 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.springkafkalabs.kafka.header.CloudEventHeaders;
+import ch.ruyalabs.springkafkalabs.kafka.header.HeaderBytes;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Suppresses payment responses that were already processed, keyed by the CloudEvent {@code id}.
+ * <p>
+ * The id is read before the payload is decoded: from the {@code ce_id} header in binary mode, and in structured mode
+ * by streaming the JSON only up to the top level {@code id} field. Ids are marked once their response was processed
+ * successfully, so records that failed and are retried are not suppressed. Processed ids are remembered in a
+ * {@link RotatingBloomFilter} for one to two {@code window}s; a false positive drops a response that was not seen
+ * before, so the rate should be kept very low. Suppressed records are counted in
+ * {@code payment.consumer.dedup.duplicates}; the memory of the filter is exported as
+ * {@code payment.consumer.dedup.memory} and {@code payment.consumer.dedup.bytes-per-id}. When disabled, neither the
+ * filter nor its meters are created.
+ */
+@Component
+public class DuplicateResponseFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DuplicateResponseFilter.class);
+
+    private static final String BINARY_ID_HEADER = "ce_id";
+
+    private final boolean enabled;
+    private final RotatingBloomFilter processedIds;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Counter duplicateCounter;
+
+    public DuplicateResponseFilter(@Value("${payment.kafka.consumer.dedup.enabled:true}") boolean enabled,
+                                   @Value("${payment.kafka.consumer.dedup.window:10m}") Duration window,
+                                   @Value("${payment.kafka.consumer.dedup.expected-ids:1000000}") long expectedIds,
+                                   @Value("${payment.kafka.consumer.dedup.false-positive-rate:0.000001}") double falsePositiveRate,
+                                   MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        if (!enabled) {
+            // No filter memory and no meters; eventId() returns null, so nothing is checked or marked
+            this.processedIds = null;
+            this.duplicateCounter = null;
+            logger.info("Duplicate response filter disabled");
+            return;
+        }
+        this.processedIds = new RotatingBloomFilter(expectedIds, falsePositiveRate, window);
+        double bytesPerId = (double) processedIds.getMemoryBytes() / expectedIds;
+
+        this.duplicateCounter = Counter.builder("payment.consumer.dedup.duplicates")
+            .description("Payment responses skipped because their CloudEvent id was already processed")
+            .register(meterRegistry);
+        Gauge.builder("payment.consumer.dedup.memory", processedIds, RotatingBloomFilter::getMemoryBytes)
+            .description("Memory of the processed CloudEvent id filter")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("payment.consumer.dedup.bytes-per-id", () -> bytesPerId)
+            .description("Filter memory per CloudEvent id processed within one window")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+
+        logger.info("Duplicate response filter: {} ids per {} at false positive rate {}, {} bytes ({} bytes per id, {} hash functions)",
+            expectedIds, window, falsePositiveRate, processedIds.getMemoryBytes(),
+            String.format("%.2f", bytesPerId), processedIds.getHashFunctions());
+    }
+
+    /**
+     * CloudEvent id of the record as UTF-8 bytes, or {@code null} if it has none or the filter is disabled
+     */
+    public byte[] eventId(ConsumerRecord<String, ?> record, byte[] payload) {
+        if (!enabled) {
+            return null;
+        }
+        if (!CloudEventHeaders.STRUCTURED_CONTENT_TYPE.matches(record.headers())) {
+            return HeaderBytes.lastValue(record.headers(), BINARY_ID_HEADER);
+        }
+        return payload != null ? structuredEventId(payload) : null;
+    }
+
+    /**
+     * Whether a response with this id was already processed; counts the duplicate if so
+     */
+    public boolean isDuplicate(byte[] eventId) {
+        if (!enabled || !processedIds.mightContain(eventId)) {
+            return false;
+        }
+        duplicateCounter.increment();
+        return true;
+    }
+
+    public void markProcessed(byte[] eventId) {
+        if (enabled) {
+            processedIds.put(eventId);
+        }
+    }
+
+    /**
+     * Stream the top level fields of a structured CloudEvent up to {@code id}, skipping nested values such as
+     * {@code data} without materializing them
+     */
+    private byte[] structuredEventId(byte[] payload) {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean isId = "id".equals(parser.currentName());
+                JsonToken value = parser.nextToken();
+                if (isId) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText().getBytes(StandardCharsets.UTF_8) : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            // Malformed payloads are reported by the decoder
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the delivery attempts of records that failed in a transactional batch.
+ * <p>
+ * A rollback redelivers the whole poll, so the container cannot tell which record keeps failing. The listener counts
+ * the failures per record itself and dead-letters a record within the batch once its attempts are used up, so the
+ * rest of the batch commits with its outcomes. Records are tracked by topic, partition and offset until they succeed
+ * or the transaction that dead-letters them commits.
+ */
+public class FailedRecordAttempts {
+
+    private final int maxAttempts;
+    private final Map<RecordPosition, Integer> attempts = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxAttempts deliveries of a record before it is given up, the first one included
+     */
+    public FailedRecordAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Count a failed delivery of the record
+     *
+     * @return whether the record has used up its attempts
+     */
+    public boolean failed(ConsumerRecord<?, ?> record) {
+        return attempts.merge(key(record), 1, Integer::sum) >= maxAttempts;
+    }
+
+    /**
+     * Forget the record once it succeeded or its dead-lettering committed
+     */
+    public void clear(ConsumerRecord<?, ?> record) {
+        if (!attempts.isEmpty()) {
+            attempts.remove(key(record));
+        }
+    }
+
+    public int getTrackedRecords() {
+        return attempts.size();
+    }
+
+    private static RecordPosition key(ConsumerRecord<?, ?> record) {
+        return new RecordPosition(record.topic(), record.partition(), record.offset());
+    }
+
+    /**
+     * Topic, partition and offset of a record; TopicPartitionOffset leaves the offset out of equals
+     */
+    private record RecordPosition(String topic, int partition, long offset) {
+    }
+}
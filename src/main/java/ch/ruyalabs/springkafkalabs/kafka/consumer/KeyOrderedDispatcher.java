@@ -0,0 +1,171 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Fans the records of one poll out across a worker pool while keeping the order per record key.
+ * <p>
+ * Every record is assigned to a lane by the hash of its key (the disbursementId), records without a key by their
+ * partition. Each lane is processed sequentially by one worker, so records with the same key are handled in offset
+ * order while different keys run in parallel, independent of the number of partitions.
+ * <p>
+ * {@link #dispatch(List, Consumer)} returns once every lane is done. If a record fails, its lane stops and the
+ * failure of the record with the lowest index in the batch is reported as a {@link BatchListenerFailedException}.
+ * All records before that index have been processed successfully, so the error handler commits exactly that
+ * contiguous prefix and redelivers the rest; records after it that already succeeded in other lanes are processed
+ * again (at least once).
+ */
+public class KeyOrderedDispatcher implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyOrderedDispatcher.class);
+
+    private final int lanes;
+    private final Executor executor;
+    private final ExecutorService ownedPool;
+
+    /**
+     * Run the lanes on a fixed pool of platform threads, one per lane
+     *
+     * @param workers number of lanes and worker threads; 0 uses one per available processor
+     */
+    public KeyOrderedDispatcher(int workers) {
+        this.lanes = lanes(workers);
+        this.ownedPool = Executors.newFixedThreadPool(lanes, platformThreadFactory());
+        this.executor = ownedPool;
+
+        logger.info("Key ordered dispatcher using {} lanes on platform threads", lanes);
+    }
+
+    /**
+     * Run the lanes on {@code executor}, which is not pooled or shut down by the dispatcher, e.g. a virtual thread
+     * per task executor
+     *
+     * @param workers  number of lanes; 0 uses one per available processor
+     * @param executor executor running every lane as a task
+     */
+    public KeyOrderedDispatcher(int workers, Executor executor) {
+        this.lanes = lanes(workers);
+        this.ownedPool = null;
+        this.executor = executor;
+
+        logger.info("Key ordered dispatcher using {} lanes on {}", lanes, executor.getClass().getSimpleName());
+    }
+
+    private static int lanes(int workers) {
+        return workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Process the records with {@code handler}, in parallel across keys and in order per key
+     */
+    public <R extends ConsumerRecord<?, ?>> void dispatch(List<R> records, Consumer<R> handler) {
+        dispatchIndexed(records, (record, index) -> handler.accept(record));
+    }
+
+    /**
+     * Like {@link #dispatch(List, Consumer)}, returning the result of {@code handler} for every record in batch order
+     */
+    @SuppressWarnings("unchecked")
+    public <R extends ConsumerRecord<?, ?>, T> List<T> dispatchAndCollect(List<R> records, Function<R, T> handler) {
+        // Each slot is written by one lane; joining the lanes makes the writes visible to the caller
+        Object[] results = new Object[records.size()];
+        dispatchIndexed(records, (record, index) -> results[index] = handler.apply(record));
+        return (List<T>) Arrays.asList(results);
+    }
+
+    private <R extends ConsumerRecord<?, ?>> void dispatchIndexed(List<R> records, ObjIntConsumer<R> handler) {
+        List<List<Integer>> assigned = assignLanes(records);
+
+        AtomicInteger firstFailedIndex = new AtomicInteger(Integer.MAX_VALUE);
+        RuntimeException[] failures = new RuntimeException[records.size()];
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(assigned.size());
+        for (int i = 0; i < assigned.size() - 1; i++) {
+            List<Integer> lane = assigned.get(i);
+            futures.add(CompletableFuture.runAsync(
+                () -> processLane(records, lane, handler, firstFailedIndex, failures), executor));
+        }
+        // The listener thread takes the last lane itself instead of waiting idle
+        if (!assigned.isEmpty()) {
+            processLane(records, assigned.get(assigned.size() - 1), handler, firstFailedIndex, failures);
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        int failedIndex = firstFailedIndex.get();
+        if (failedIndex != Integer.MAX_VALUE) {
+            throw new BatchListenerFailedException("Failed to process payment response",
+                failures[failedIndex], failedIndex);
+        }
+    }
+
+    /**
+     * Indices of the records per non-empty lane, in batch order
+     */
+    private List<List<Integer>> assignLanes(List<? extends ConsumerRecord<?, ?>> records) {
+        List<List<Integer>> byLane = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            byLane.add(new ArrayList<>());
+        }
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<?, ?> record = records.get(i);
+            int hash = record.key() != null ? Objects.hashCode(record.key()) : record.partition();
+            byLane.get(Math.floorMod(hash, lanes)).add(i);
+        }
+        byLane.removeIf(List::isEmpty);
+        return byLane;
+    }
+
+    private <R extends ConsumerRecord<?, ?>> void processLane(List<R> records, List<Integer> lane,
+                                                              ObjIntConsumer<R> handler,
+                                                              AtomicInteger firstFailedIndex,
+                                                              RuntimeException[] failures) {
+        for (int index : lane) {
+            try {
+                handler.accept(records.get(index), index);
+            } catch (RuntimeException e) {
+                // Later records of this lane may share the key, so they must not overtake the failed one
+                failures[index] = e;
+                firstFailedIndex.accumulateAndGet(index, Math::min);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (ownedPool != null) {
+            ownedPool.shutdown();
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "payment-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
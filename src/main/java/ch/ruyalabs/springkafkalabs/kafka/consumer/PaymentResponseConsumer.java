@@ -1,100 +1,532 @@
 package ch.ruyalabs.springkafkalabs.kafka.consumer;
 
+import ch.ruyalabs.springkafkalabs.kafka.consumer.ConsumerStageMetrics.RecordOutcome;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.ConsumerStageMetrics.Stage;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.ConsumerStageMetrics.StageOutcome;
+import ch.ruyalabs.springkafkalabs.kafka.correlation.PaymentCorrelationStore;
+import ch.ruyalabs.springkafkalabs.kafka.header.CloudEventHeaders;
+import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentOutcomeProducer;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusIndex;
 import ch.ruyalabs.types.PaymentDisbursementResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.cloudevents.CloudEvent;
+import io.cloudevents.CloudEventData;
+import io.cloudevents.core.data.PojoCloudEventData;
 import io.cloudevents.core.format.EventFormat;
 import io.cloudevents.jackson.JsonFormat;
+import io.cloudevents.kafka.KafkaMessageFactory;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.serializer.SerializationUtils;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 @Component
-public class PaymentResponseConsumer {
+public class PaymentResponseConsumer implements ConsumerSeekAware {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentResponseConsumer.class);
 
+    private static final String BINARY_SPEC_VERSION_HEADER = "ce_specversion";
+
     private final ObjectMapper objectMapper;
+    private final EventFormat eventFormat;
+    private final CloudEventResponseDecoder responseDecoder;
+    private final CloudEventAttributeValidator attributeValidator;
+    private final KeyOrderedDispatcher dispatcher;
+    private final PaymentCorrelationStore correlationStore;
+    private final DuplicateResponseFilter duplicateFilter;
+    private final PaymentStatusIndex statusIndex;
+    private final ConsumerStageMetrics metrics;
+    private final ConsumerRecordRecoverer deadLetterRecoverer;
+    private final PaymentOutcomeProducer outcomeProducer;
+    private final FailedRecordAttempts failedAttempts;
+    private final Map<TopicPartition, Long> replayUntil = new ConcurrentHashMap<>();
 
-    public PaymentResponseConsumer() {
+    public PaymentResponseConsumer(CloudEventAttributeValidator attributeValidator, KeyOrderedDispatcher dispatcher,
+                                   PaymentCorrelationStore correlationStore, DuplicateResponseFilter duplicateFilter,
+                                   PaymentStatusIndex statusIndex, ConsumerStageMetrics metrics,
+                                   ConsumerRecordRecoverer deadLetterRecoverer, PaymentOutcomeProducer outcomeProducer,
+                                   FailedRecordAttempts failedAttempts) {
         this.objectMapper = new ObjectMapper();
+        this.eventFormat = new JsonFormat();
+        this.responseDecoder = new CloudEventResponseDecoder(objectMapper);
+        this.attributeValidator = attributeValidator;
+        this.dispatcher = dispatcher;
+        this.correlationStore = correlationStore;
+        this.duplicateFilter = duplicateFilter;
+        this.statusIndex = statusIndex;
+        this.metrics = metrics;
+        this.deadLetterRecoverer = deadLetterRecoverer;
+        this.outcomeProducer = outcomeProducer;
+        this.failedAttempts = failedAttempts;
     }
 
+    /**
+     * Process one payment response and publish its outcome with the {@link PaymentOutcomeProducer}; the listener
+     * returns once the outcome is acknowledged, so a failed send is retried with the record
+     */
+    @PaymentResponseRetryableTopic
     @KafkaListener(topics = "${payment.kafka.topics.response}")
     public void handlePaymentResponse(ConsumerRecord<String, String> record) {
-        try {
-            String rawMessage = record.value();
+        if (replayIntoStatusIndex(List.of(record), PaymentResponseConsumer::valueBytes).isEmpty()) {
+            statusIndex.recordPosition(record.topic(), record.partition(), record.offset() + 1);
+            return;
+        }
+        ProcessedResponse processed = processPayload(record, valueBytes(record), false);
+        publishOutcome(processed);
+        markProcessed(processed);
+        statusIndex.recordPosition(record.topic(), record.partition(), record.offset() + 1);
+    }
 
-            // Handle null or empty messages
-            if (rawMessage == null || rawMessage.trim().isEmpty()) {
-                logger.error("Received null or empty message from topic: {}, partition: {}, offset: {}, key: {}", 
-                    record.topic(), record.partition(), record.offset(), record.key());
-                return;
+    /**
+     * Raw byte variant of {@link #handlePaymentResponse(ConsumerRecord)}, active when
+     * payment.kafka.consumer.mode=bytes. The value bytes are passed to the CloudEvent format as they were
+     * read from the broker.
+     */
+    @PaymentResponseRetryableTopic
+    @KafkaListener(topics = "${payment.kafka.topics.response}", containerFactory = "byteArrayKafkaListenerContainerFactory")
+    public void handlePaymentResponseBytes(ConsumerRecord<String, byte[]> record) {
+        if (replayIntoStatusIndex(List.of(record), ConsumerRecord::value).isEmpty()) {
+            statusIndex.recordPosition(record.topic(), record.partition(), record.offset() + 1);
+            return;
+        }
+        ProcessedResponse processed = processPayload(record, record.value(), false);
+        publishOutcome(processed);
+        markProcessed(processed);
+        statusIndex.recordPosition(record.topic(), record.partition(), record.offset() + 1);
+    }
+
+    /**
+     * Batch variant of {@link #handlePaymentResponse(ConsumerRecord)}, active when
+     * payment.kafka.consumer.mode=batch. Every record of the poll runs through the same pipeline, spread over
+     * the worker lanes of the {@link KeyOrderedDispatcher} and in order per key; offsets are committed once for
+     * the whole batch, or up to the first failed record.
+     * <p>
+     * The outcomes of the processed responses are then published by the {@link PaymentOutcomeProducer}, in batch
+     * order and from the listener thread, so that they join the transaction of a transactional container. The
+     * listener returns once all outcomes are acknowledged. The CloudEvent ids of the batch are only remembered as
+     * processed once its transaction committed, so a batch redelivered after a rollback is not skipped as duplicates.
+     * In a transaction, poison pills and records that keep failing once their attempts are used up, see
+     * {@link FailedRecordAttempts}, are published to the DLT by the listener thread as well, so they are part of the
+     * transaction: an aborted poll leaves nothing in the DLT, and the rest of the batch commits.
+     */
+    @KafkaListener(topics = "${payment.kafka.topics.response}", containerFactory = "batchKafkaListenerContainerFactory")
+    public void handlePaymentResponseBatch(List<ConsumerRecord<String, String>> records) {
+        logger.debug("Received batch of {} payment responses", records.size());
+
+        // The transaction is bound to the listener thread, the worker lanes cannot see it
+        boolean transactional = TransactionSynchronizationManager.isActualTransactionActive();
+        List<ConsumerRecord<String, String>> unprocessed = replayIntoStatusIndex(records,
+            PaymentResponseConsumer::valueBytes);
+        List<ProcessedResponse> processed = dispatcher.dispatchAndCollect(unprocessed,
+            record -> processPayload(record, valueBytes(record), transactional));
+        deadLetter(processed);
+        publishOutcomes(processed);
+        completeAfterCommit(processed);
+        // Lanes finish out of offset order, so positions only move once the whole batch succeeded
+        recordPositions(records);
+    }
+
+    /**
+     * After a restart with a restored {@link PaymentStatusIndex} snapshot that is behind the committed offset of a
+     * partition, start the partition at the offset the snapshot reflects, so the index catches up on what it missed.
+     * The records up to the committed offset were fully processed before, so they only update the index, see
+     * {@link #replayIntoStatusIndex(List, Function)}. A snapshot at or ahead of the committed offset needs no seek.
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        for (Map.Entry<TopicPartition, Long> assignment : assignments.entrySet()) {
+            TopicPartition topicPartition = assignment.getKey();
+            Long offset = statusIndex.takeRestoredPosition(topicPartition);
+            Long committed = assignment.getValue();
+            if (offset != null && committed != null && offset < committed) {
+                logger.info("Seeking {} to offset {} of the payment status snapshot, replaying up to offset {} into "
+                    + "the status index only", topicPartition, offset, committed);
+                replayUntil.put(topicPartition, committed);
+                callback.seek(topicPartition.topic(), topicPartition.partition(), offset);
             }
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        partitions.forEach(replayUntil::remove);
+    }
+
+    /**
+     * Apply the records a partition was sought back to after a snapshot restore, those below its committed offset,
+     * to the {@link PaymentStatusIndex} only: no outcomes, DLT, correlation, duplicate tracking or metrics. A partition
+     * stops replaying once a delivery of it starts at the committed offset; a rollback only seeks back to the start of
+     * its own batch, so a batch with replayed records is replayed again.
+     *
+     * @return the records to process
+     */
+    private <T extends ConsumerRecord<String, ?>> List<T> replayIntoStatusIndex(List<T> records,
+                                                                               Function<T, byte[]> payload) {
+        if (replayUntil.isEmpty()) {
+            return records;
+        }
+        List<T> unprocessed = new ArrayList<>(records.size());
+        Set<TopicPartition> replayed = new HashSet<>();
+        Set<TopicPartition> caughtUp = new HashSet<>();
+        for (T record : records) {
+            TopicPartition topicPartition = new TopicPartition(record.topic(), record.partition());
+            Long until = replayUntil.get(topicPartition);
+            if (until != null && record.offset() < until) {
+                replayStatus(record, payload.apply(record));
+                replayed.add(topicPartition);
+            } else {
+                if (until != null) {
+                    caughtUp.add(topicPartition);
+                }
+                unprocessed.add(record);
+            }
+        }
+        caughtUp.removeAll(replayed);
+        caughtUp.forEach(replayUntil::remove);
+        return unprocessed;
+    }
 
-            // Check whether the received Cloud Event has been sent in structured mode
-            if (!isStructuredMode(record)) {
-                logger.error("CloudEvent not sent in structured mode (Content-Type: application/cloudevents+json; charset=UTF-8) from topic: {}, partition: {}, offset: {}, key: {}", 
-                    record.topic(), record.partition(), record.offset(), record.key());
+    /**
+     * Update the status index from a record that was processed before the restart. Records that were poison pills
+     * then are skipped.
+     */
+    private void replayStatus(ConsumerRecord<String, ?> record, byte[] payload) {
+        if (payload == null || isBlank(payload)) {
+            return;
+        }
+        try {
+            CloudEvent cloudEvent = isStructuredMode(record) ? deserializeCloudEvent(payload)
+                : isBinaryMode(record) ? readBinaryCloudEvent(record.headers(), payload) : null;
+            if (cloudEvent == null || cloudEvent.getData() == null || !attributeValidator.validate(cloudEvent)) {
                 return;
             }
+            PaymentDisbursementResponse response = toPaymentResponse(cloudEvent.getData());
+            if (response.getDisbursementId() != null && response.getStatus() != null) {
+                statusIndex.update(response);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Skipping payment response that cannot be replayed: {}",
+                describe(e.getMessage(), record));
+        }
+    }
+
+    /**
+     * Record the position of each partition in the batch once, at its last record; a poll returns the records of a
+     * partition together and in offset order
+     */
+    private void recordPositions(List<? extends ConsumerRecord<String, ?>> records) {
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, ?> record = records.get(i);
+            ConsumerRecord<String, ?> next = i + 1 < records.size() ? records.get(i + 1) : null;
+            if (next == null || next.partition() != record.partition() || !next.topic().equals(record.topic())) {
+                statusIndex.recordPosition(record.topic(), record.partition(), record.offset() + 1);
+            }
+        }
+    }
+
+    /**
+     * Publish the records the lanes left to the listener thread to the DLT, in batch order
+     */
+    private void deadLetter(List<ProcessedResponse> processed) {
+        for (ProcessedResponse result : processed) {
+            if (result != null && result.deadLetterCause() != null) {
+                deadLetterRecoverer.accept(result.record(), result.deadLetterCause());
+            }
+        }
+    }
+
+    private void publishOutcome(ProcessedResponse processed) {
+        if (outcomeProducer.isEnabled() && processed != null) {
+            outcomeProducer.send(processed.record(), processed.response()).join();
+        }
+    }
+
+    private void publishOutcomes(List<ProcessedResponse> processed) {
+        if (!outcomeProducer.isEnabled()) {
+            return;
+        }
+        CompletableFuture<?>[] sends = processed.stream()
+            .filter(result -> result != null && result.deadLetterCause() == null)
+            .map(result -> outcomeProducer.send(result.record(), result.response()))
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(sends).join();
+    }
+
+    /**
+     * Remember the CloudEvent ids of a batch once its transaction committed, or right away without a transaction.
+     * The attempts of the records it dead-lettered are only forgotten then too, so after a rollback they are
+     * dead-lettered again in the next transaction instead of starting over. Runs on the listener thread, which the
+     * container's transaction is bound to.
+     */
+    private void completeAfterCommit(List<ProcessedResponse> processed) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            processed.forEach(this::markProcessed);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (ProcessedResponse result : processed) {
+                    markProcessed(result);
+                    if (result != null && result.deadLetterCause() != null) {
+                        failedAttempts.clear(result.record());
+                    }
+                }
+            }
+        });
+    }
+
+    private void markProcessed(ProcessedResponse processed) {
+        if (processed != null && processed.eventId() != null) {
+            duplicateFilter.markProcessed(processed.eventId());
+        }
+    }
+
+    private static byte[] valueBytes(ConsumerRecord<String, String> record) {
+        String rawMessage = record.value();
+        return rawMessage != null ? rawMessage.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Pipeline shared by all listener variants, working on the value bytes of the record.
+     * Records that cannot be read are poison pills: retrying them cannot help, so they are published to the DLT right
+     * away and the listener moves on. Failures while processing a valid payment response are thrown, so the record is
+     * retried, unless {@code transactional} is set and the record has used up its {@link FailedRecordAttempts}; then
+     * it is dead-lettered as well. If the DLT cannot be reached, that failure is thrown. In a transaction nothing is
+     * published here, on a worker lane outside the transaction: the record is returned with the cause for the
+     * listener thread to dead-letter. Responses whose CloudEvent id was
+     * already processed are skipped before they are decoded; the caller marks the id as processed once the record
+     * is done. Each stage and the whole record are timed in {@link ConsumerStageMetrics}, and in a
+     * {@link PaymentResponseEvent} while it is being recorded.
+     *
+     * @return the processed payment response or the record to dead-letter, or {@code null} if the record was a
+     * duplicate or dead-lettered
+     */
+    private ProcessedResponse processPayload(ConsumerRecord<String, ?> record, byte[] payload,
+                                             boolean transactional) {
+        long start = System.nanoTime();
+        PaymentResponseEvent event = PaymentResponseEvent.start();
+        byte[] eventId = duplicateFilter.eventId(record, payload);
+        if (eventId != null && duplicateFilter.isDuplicate(eventId)) {
+            logger.info("Skipping duplicate payment response from topic: {}, partition: {}, offset: {}, key: {}",
+                record.topic(), record.partition(), record.offset(), record.key());
+            finish(record, payload, RecordOutcome.DUPLICATE, null, start, event);
+            return null;
+        }
+
+        PaymentDisbursementResponse response;
+        try {
+            response = readPaymentResponse(record, payload, event);
+        } catch (PoisonPillException e) {
+            reportPoisonPill(record, e);
+            finish(record, payload, RecordOutcome.DEAD_LETTERED, null, start, event);
+            if (transactional) {
+                return ProcessedResponse.deadLetter(record, e);
+            }
+            deadLetterRecoverer.accept(record, e);
+            return null;
+        }
+
+        long processStart = System.nanoTime();
+        try {
+            processPaymentResponse(response);
+        } catch (RuntimeException e) {
+            metrics.failure(PaymentResponseFailure.TRANSIENT);
+            stage(Stage.PROCESS, record, StageOutcome.ERROR, response.getStatus(), processStart, event);
+            if (transactional && failedAttempts.failed(record)) {
+                logger.error("Publishing payment response to the DLT after its last attempt: {}",
+                    describe(e.getMessage(), record), e);
+                finish(record, payload, RecordOutcome.DEAD_LETTERED, response, start, event);
+                return ProcessedResponse.deadLetter(record, e);
+            }
+            finish(record, payload, RecordOutcome.ERROR, response, start, event);
+            throw e;
+        }
+        if (transactional) {
+            failedAttempts.clear(record);
+        }
+        stage(Stage.PROCESS, record, StageOutcome.SUCCESS, response.getStatus(), processStart, event);
+        finish(record, payload, RecordOutcome.PROCESSED, response, start, event);
+        return new ProcessedResponse(record, eventId, response, null);
+    }
+
+    /**
+     * Decode and validate the payment response
+     *
+     * @throws PoisonPillException if the record can never be processed
+     */
+    private PaymentDisbursementResponse readPaymentResponse(ConsumerRecord<String, ?> record, byte[] payload,
+                                                            PaymentResponseEvent event) {
+        try {
+            // Handle null or empty messages; with a batch listener, a value that failed deserialization arrives as null
+            if (payload == null || isBlank(payload)) {
+                if (failedDeserialization(record)) {
+                    throw poisonPill(PaymentResponseFailure.DESERIALIZATION, "Value could not be deserialized", record);
+                }
+                throw poisonPill(PaymentResponseFailure.EMPTY_PAYLOAD, "Received null or empty message", record);
+            }
 
-            // Deserialize the received Cloud Event to CloudEvent (String -> CloudEvent)
-            CloudEvent cloudEvent = deserializeCloudEvent(rawMessage);
+            // Check whether the received Cloud Event has been sent in structured or binary mode
+            long start = System.nanoTime();
+            boolean structuredMode = isStructuredMode(record);
+            boolean cloudEventMode = structuredMode || isBinaryMode(record);
+            stage(Stage.STRUCTURED_MODE, record, cloudEventMode, start, event);
+            if (!cloudEventMode) {
+                throw poisonPill(PaymentResponseFailure.UNSUPPORTED_MODE, "CloudEvent sent neither in structured mode (Content-Type: application/cloudevents+json; charset=UTF-8) nor in binary mode (ce_specversion header)", record);
+            }
+
+            // Deserialize the received Cloud Event to CloudEvent (byte[] -> CloudEvent)
+            start = System.nanoTime();
+            CloudEvent cloudEvent = structuredMode
+                ? deserializeCloudEvent(payload)
+                : readBinaryCloudEvent(record.headers(), payload);
+            stage(Stage.DESERIALIZE, record, cloudEvent != null, start, event);
             if (cloudEvent == null) {
-                logger.error("Failed to deserialize CloudEvent from topic: {}, partition: {}, offset: {}, key: {}", 
-                    record.topic(), record.partition(), record.offset(), record.key());
-                return;
+                throw poisonPill(PaymentResponseFailure.DESERIALIZATION, "Failed to deserialize CloudEvent", record);
             }
 
             logger.info("Received CloudEvent with ID: {}, Type: {}, Source: {}", 
                        cloudEvent.getId(), cloudEvent.getType(), cloudEvent.getSource());
 
             // Check whether the cloud event attributes were delivered as defined in the schema
-            if (!validateCloudEventAttributes(cloudEvent)) {
-                logger.error("CloudEvent attributes validation failed from topic: {}, partition: {}, offset: {}, key: {}", 
-                    record.topic(), record.partition(), record.offset(), record.key());
-                return;
+            start = System.nanoTime();
+            boolean valid = validateCloudEventAttributes(cloudEvent);
+            stage(Stage.VALIDATE, record, valid, start, event);
+            if (!valid) {
+                throw poisonPill(PaymentResponseFailure.VALIDATION, "CloudEvent attributes validation failed", record);
             }
 
             // Map cloud event data to generated class
-            if (cloudEvent.getData() != null) {
-                PaymentDisbursementResponse response = objectMapper.readValue(
-                    cloudEvent.getData().toBytes(), 
-                    PaymentDisbursementResponse.class
-                );
+            if (cloudEvent.getData() == null) {
+                throw poisonPill(PaymentResponseFailure.MAPPING, "Received CloudEvent with no data", record);
+            }
+            start = System.nanoTime();
+            PaymentDisbursementResponse response;
+            try {
+                response = toPaymentResponse(cloudEvent.getData());
+            } catch (IOException | RuntimeException e) {
+                stage(Stage.MAP, record, StageOutcome.ERROR, null, start, event);
+                throw new PoisonPillException(PaymentResponseFailure.MAPPING,
+                    describe("CloudEvent data is not a payment response", record), e);
+            }
+            stage(Stage.MAP, record, true, start, event);
 
-                logger.info("Processing payment response for disbursementId: {}, status: {}", 
-                           response.getDisbursementId(), response.getStatus());
+            logger.info("Processing payment response for disbursementId: {}, status: {}", 
+                       response.getDisbursementId(), response.getStatus());
 
-                // Process payment response
-                processPaymentResponse(response);
-            } else {
-                logger.warn("Received CloudEvent with no data");
-            }
+            return response;
+        } catch (PoisonPillException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Error processing payment response CloudEvent from topic: {}, partition: {}, offset: {}, key: {}, error: {}", 
-                record.topic(), record.partition(), record.offset(), record.key(), e.getMessage(), e);
+            // Reading depends on nothing but the record, so an unexpected failure repeats on every attempt
+            throw new PoisonPillException(PaymentResponseFailure.DESERIALIZATION,
+                describe("Error reading payment response CloudEvent", record), e);
+        }
+    }
+
+    /**
+     * Log and count a poison pill before it is published to the DLT with its original value and the error headers.
+     * For a value the Kafka deserializer failed on, the recoverer publishes the original bytes kept in the
+     * deserializer header.
+     */
+    private void reportPoisonPill(ConsumerRecord<String, ?> record, PoisonPillException e) {
+        logger.error("Publishing poison pill to the DLT ({}): {}", e.getFailure().tagValue(), e.getMessage(),
+            e.getCause());
+        // Deserializer failures are counted by the consumer factory when they happen
+        if (!failedDeserialization(record)) {
+            metrics.failure(e.getFailure());
         }
     }
 
+    private static boolean failedDeserialization(ConsumerRecord<String, ?> record) {
+        return record.headers().lastHeader(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER) != null;
+    }
+
+    private static PoisonPillException poisonPill(PaymentResponseFailure failure, String message,
+                                                  ConsumerRecord<String, ?> record) {
+        return new PoisonPillException(failure, describe(message, record));
+    }
+
+    private static String describe(String message, ConsumerRecord<String, ?> record) {
+        return String.format("%s from topic: %s, partition: %d, offset: %d, key: %s",
+            message, record.topic(), record.partition(), record.offset(), record.key());
+    }
+
+    /**
+     * Time a stage in the metrics and in the recorded event, if any
+     */
+    private void stage(Stage stage, ConsumerRecord<String, ?> record, boolean passed, long start,
+                       PaymentResponseEvent event) {
+        long elapsed = metrics.stage(stage, record, passed, start);
+        if (event != null) {
+            event.stageTime(stage, elapsed);
+        }
+    }
 
+    private void stage(Stage stage, ConsumerRecord<String, ?> record, StageOutcome outcome,
+                       PaymentDisbursementResponse.Status status, long start, PaymentResponseEvent event) {
+        long elapsed = metrics.stage(stage, record, outcome, status, start);
+        if (event != null) {
+            event.stageTime(stage, elapsed);
+        }
+    }
 
+    /**
+     * Time the whole record in the metrics and commit the recorded event, if any
+     */
+    private void finish(ConsumerRecord<String, ?> record, byte[] payload, RecordOutcome outcome,
+                        PaymentDisbursementResponse response, long start, PaymentResponseEvent event) {
+        PaymentDisbursementResponse.Status status = response != null ? response.getStatus() : null;
+        metrics.record(record, outcome, status, start);
+        if (event != null) {
+            event.topic = record.topic();
+            event.partition = record.partition();
+            event.offset = record.offset();
+            event.payloadSize = payload != null ? payload.length : 0;
+            event.outcome = outcome.name().toLowerCase(Locale.ROOT);
+            if (response != null) {
+                event.disbursementId = String.valueOf(response.getDisbursementId());
+                event.status = status != null ? status.value() : null;
+            }
+            event.commit();
+        }
+    }
 
     private void processPaymentResponse(PaymentDisbursementResponse response) {
         switch (response.getStatus()) {
             case PROCESSED:
                 logger.info("Payment processed successfully for disbursementId: {}, transactionId: {}", 
                            response.getDisbursementId(), response.getTransactionId());
+                correlationStore.complete(response);
                 break;
             case FAILED:
                 logger.error("Payment failed for disbursementId: {}, reason: {}", 
                             response.getDisbursementId(), response.getFailureReason());
+                correlationStore.complete(response);
                 break;
             case PENDING:
+                // Not an outcome yet, a caller awaiting the response keeps waiting
                 logger.info("Payment is pending for disbursementId: {}", 
                            response.getDisbursementId());
                 break;
@@ -102,82 +534,99 @@ public class PaymentResponseConsumer {
                 logger.warn("Unknown payment status: {} for disbursementId: {}", 
                            response.getStatus(), response.getDisbursementId());
         }
+        statusIndex.update(response);
     }
 
     /**
      * Check whether the received Cloud Event has been sent in structured mode
-     * (Content-Type: application/cloudevents+json; charset=UTF-8)
+     * (Content-Type: application/cloudevents+json; charset=UTF-8). The header bytes are matched in place.
      */
-    private boolean isStructuredMode(ConsumerRecord<String, String> record) {
-        Header contentTypeHeader = record.headers().lastHeader("content-type");
-        if (contentTypeHeader == null) {
-            logger.debug("No content-type header found");
-            return false;
-        }
-
-        String contentType = new String(contentTypeHeader.value());
-        logger.debug("Content-Type header: {}", contentType);
+    private boolean isStructuredMode(ConsumerRecord<String, ?> record) {
+        return CloudEventHeaders.STRUCTURED_CONTENT_TYPE.matches(record.headers());
+    }
 
-        // Check for structured mode content type
-        return contentType.toLowerCase().contains("application/cloudevents+json");
+    /**
+     * Check whether the received Cloud Event has been sent in binary mode, i.e. with its attributes in ce_* headers
+     */
+    private boolean isBinaryMode(ConsumerRecord<String, ?> record) {
+        return record.headers().lastHeader(BINARY_SPEC_VERSION_HEADER) != null;
     }
 
     /**
-     * Deserialize the received Cloud Event string to CloudEvent object
+     * Read a binary mode Cloud Event from the record headers. The payload is only wrapped, not parsed,
+     * so the attributes can be validated before the data is touched.
      */
-    private CloudEvent deserializeCloudEvent(String rawMessage) {
+    private CloudEvent readBinaryCloudEvent(Headers headers, byte[] payload) {
         try {
-            EventFormat eventFormat = new JsonFormat();
-            return eventFormat.deserialize(rawMessage.getBytes());
+            return KafkaMessageFactory.createReader(headers, payload).toEvent();
         } catch (Exception e) {
-            logger.error("Failed to deserialize CloudEvent: {}", e.getMessage(), e);
+            logger.error("Failed to read binary mode CloudEvent: {}", e.getMessage(), e);
             return null;
         }
     }
 
     /**
-     * Validate cloud event attributes against the schema requirements
+     * Check whether the payload consists of whitespace only, the byte equivalent of String.trim().isEmpty()
      */
-    private boolean validateCloudEventAttributes(CloudEvent cloudEvent) {
-        // Check specversion
-        if (!"1.0".equals(cloudEvent.getSpecVersion().toString())) {
-            logger.error("Invalid specversion: expected '1.0', got '{}'", cloudEvent.getSpecVersion());
-            return false;
-        }
-
-        // Check type
-        if (!"com.ruyalabs.payment.disbursement.request".equals(cloudEvent.getType())) {
-            logger.error("Invalid type: expected 'com.ruyalabs.payment.disbursement.request', got '{}'", cloudEvent.getType());
-            return false;
+    private boolean isBlank(byte[] payload) {
+        for (byte b : payload) {
+            if ((b & 0xFF) > ' ') {
+                return false;
+            }
         }
+        return true;
+    }
 
-        // Check source
-        String source = cloudEvent.getSource().toString();
-        if (!"payment-service".equals(source) && !"payment-2-service".equals(source)) {
-            logger.error("Invalid source: expected 'payment-service' or 'payment-2-service', got '{}'", source);
-            return false;
+    /**
+     * Deserialize the received Cloud Event bytes to CloudEvent object. Standard payloads are decoded in a single
+     * pass including the data; everything else goes through the generic CloudEvent format.
+     */
+    private CloudEvent deserializeCloudEvent(byte[] payload) {
+        CloudEvent cloudEvent = responseDecoder.decode(payload);
+        if (cloudEvent != null) {
+            return cloudEvent;
         }
 
-        // Check id is present and not empty
-        if (cloudEvent.getId() == null || cloudEvent.getId().trim().isEmpty()) {
-            logger.error("Invalid id: id is required and cannot be empty");
-            return false;
+        try {
+            return eventFormat.deserialize(payload);
+        } catch (Exception e) {
+            logger.error("Failed to deserialize CloudEvent: {}", e.getMessage(), e);
+            return null;
         }
+    }
 
-        // Check datacontenttype
-        if (cloudEvent.getDataContentType() != null && 
-            !"application/json".equals(cloudEvent.getDataContentType())) {
-            logger.error("Invalid datacontenttype: expected 'application/json', got '{}'", cloudEvent.getDataContentType());
-            return false;
+    /**
+     * Map the cloud event data to the generated class, reusing the instance bound by the streaming decoder
+     */
+    private PaymentDisbursementResponse toPaymentResponse(CloudEventData data) throws IOException {
+        if (data instanceof PojoCloudEventData<?> pojoData
+                && pojoData.getValue() instanceof PaymentDisbursementResponse response) {
+            return response;
         }
+        return objectMapper.readValue(data.toBytes(), PaymentDisbursementResponse.class);
+    }
 
-        // Check data is present
-        if (cloudEvent.getData() == null) {
-            logger.error("Invalid data: data is required");
+    /**
+     * Validate cloud event attributes against the schema requirements
+     */
+    private boolean validateCloudEventAttributes(CloudEvent cloudEvent) {
+        if (!attributeValidator.validate(cloudEvent)) {
             return false;
         }
 
         logger.debug("CloudEvent attributes validation passed");
         return true;
     }
+
+    /**
+     * A processed payment response, the record it was read from and its CloudEvent id, {@code null} if duplicates are
+     * not tracked; or a record the listener thread has to publish to the DLT, with the cause of its failure
+     */
+    private record ProcessedResponse(ConsumerRecord<String, ?> record, byte[] eventId,
+                                     PaymentDisbursementResponse response, RuntimeException deadLetterCause) {
+
+        private static ProcessedResponse deadLetter(ConsumerRecord<String, ?> record, RuntimeException cause) {
+            return new ProcessedResponse(record, null, null, cause);
+        }
+    }
 }
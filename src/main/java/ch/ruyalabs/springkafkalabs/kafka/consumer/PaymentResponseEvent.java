@@ -0,0 +1,94 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event of one payment response record passing through {@link PaymentResponseConsumer}. The event
+ * duration is the whole record; the stage fields hold the time of each stage, or 0 if the record did not reach it.
+ * <p>
+ * Use {@link #start()}, which returns {@code null} unless the event is enabled in a running recording, so nothing is
+ * allocated or measured for it otherwise.
+ */
+@Name(PaymentResponseEvent.NAME)
+@Label("Payment Response Consumed")
+@Category({"Payment", "Consumer"})
+@Description("A payment response record handled by the consumer, with the time of each stage")
+@StackTrace(false)
+class PaymentResponseEvent extends Event {
+
+    static final String NAME = "ch.ruyalabs.payment.ResponseConsumed";
+
+    private static final EventType TYPE = EventType.getEventType(PaymentResponseEvent.class);
+
+    @Label("Topic")
+    String topic;
+
+    @Label("Partition")
+    int partition;
+
+    @Label("Offset")
+    long offset;
+
+    @Label("Disbursement Id")
+    String disbursementId;
+
+    @Label("Payload Size")
+    @DataAmount
+    int payloadSize;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Status")
+    String status;
+
+    @Label("Structured Mode Check")
+    @Timespan
+    long structuredModeTime;
+
+    @Label("Deserialize")
+    @Timespan
+    long deserializeTime;
+
+    @Label("Validate")
+    @Timespan
+    long validateTime;
+
+    @Label("Map")
+    @Timespan
+    long mapTime;
+
+    @Label("Process")
+    @Timespan
+    long processTime;
+
+    /**
+     * A started event, or {@code null} if the event is not recorded
+     */
+    static PaymentResponseEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        PaymentResponseEvent event = new PaymentResponseEvent();
+        event.begin();
+        return event;
+    }
+
+    void stageTime(ConsumerStageMetrics.Stage stage, long nanos) {
+        switch (stage) {
+            case STRUCTURED_MODE -> structuredModeTime = nanos;
+            case DESERIALIZE -> deserializeTime = nanos;
+            case VALIDATE -> validateTime = nanos;
+            case MAP -> mapTime = nanos;
+            case PROCESS -> processTime = nanos;
+        }
+    }
+}
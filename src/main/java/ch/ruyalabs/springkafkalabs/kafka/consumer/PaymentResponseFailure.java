@@ -0,0 +1,79 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import org.springframework.kafka.support.serializer.DeserializationException;
+
+import java.util.Locale;
+
+/**
+ * Why a payment response record failed.
+ * <p>
+ * Only {@link #TRANSIENT} failures, thrown while processing a valid payment response, are retried. All other classes
+ * depend on the record alone and fail the same way on every attempt; such poison pills are published to the DLT at
+ * once, without backoff.
+ */
+public enum PaymentResponseFailure {
+
+    /**
+     * The value is null or whitespace only
+     */
+    EMPTY_PAYLOAD(false),
+
+    /**
+     * The CloudEvent is sent neither in structured nor in binary mode
+     */
+    UNSUPPORTED_MODE(false),
+
+    /**
+     * The key or value could not be deserialized, by the Kafka deserializer or the CloudEvent format
+     */
+    DESERIALIZATION(false),
+
+    /**
+     * The CloudEvent attributes do not match the schema
+     */
+    VALIDATION(false),
+
+    /**
+     * The CloudEvent has no data, or its data is not a payment response
+     */
+    MAPPING(false),
+
+    /**
+     * Processing a valid payment response failed
+     */
+    TRANSIENT(true);
+
+    private final boolean retryable;
+
+    PaymentResponseFailure(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    public boolean retryable() {
+        return retryable;
+    }
+
+    /**
+     * Class of a failure reported to an error handler, looking through the exceptions the listener container wraps
+     * it in: the class of a {@link PoisonPillException}, {@link #DESERIALIZATION} for a {@link DeserializationException},
+     * {@link #TRANSIENT} for everything else
+     */
+    public static PaymentResponseFailure classify(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PoisonPillException poisonPill) {
+                return poisonPill.getFailure();
+            }
+            if (cause instanceof DeserializationException) {
+                return DESERIALIZATION;
+            }
+        }
+        return TRANSIENT;
+    }
+
+    /**
+     * Name used in metric tags and record headers, e.g. {@code unsupported-mode}
+     */
+    public String tagValue() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,168 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.springkafkalabs.kafka.header.CloudEventHeaders;
+import ch.ruyalabs.springkafkalabs.kafka.header.HeaderBytes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Drops records from the payment response topic based on their key and headers, before the value is looked at.
+ * <p>
+ * Structured mode records carry type and source inside the payload, so they only pass the content-type check here and
+ * are validated after decoding. Binary mode records are checked against the allowed types and sources of
+ * {@link CloudEventAttributeValidator} using their {@code ce_type} and {@code ce_source} header bytes. Records that are
+ * neither structured nor binary CloudEvents are diverted: they pass to the listener, which publishes them to the DLT as
+ * {@link PaymentResponseFailure#UNSUPPORTED_MODE}. With {@code divert-unsupported=false} they are dropped instead.
+ * Dropped, diverted and accepted records are counted in {@code payment.consumer.filter.records}, tagged with the
+ * result and the reason a record was dropped or diverted.
+ */
+@Component
+public class PaymentResponseRecordFilter implements RecordFilterStrategy<String, Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentResponseRecordFilter.class);
+
+    private static final String METRIC_NAME = "payment.consumer.filter.records";
+
+    /**
+     * Why a record was dropped
+     */
+    public enum Reason {
+        MISSING_KEY,
+        NOT_A_CLOUDEVENT,
+        TYPE_NOT_ALLOWED,
+        SOURCE_NOT_ALLOWED
+    }
+
+    private final boolean requireKey;
+    private final boolean divertUnsupported;
+    private final byte[][] allowedTypes;
+    private final byte[][] allowedSources;
+    private final Counter acceptedCounter;
+    private final Counter divertedCounter;
+    private final Map<Reason, Counter> filteredCounters = new EnumMap<>(Reason.class);
+
+    public PaymentResponseRecordFilter(CloudEventAttributeValidator attributeValidator,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${payment.kafka.consumer.filter.require-key:false}") boolean requireKey,
+                                       @Value("${payment.kafka.consumer.filter.divert-unsupported:true}") boolean divertUnsupported) {
+        this.requireKey = requireKey;
+        this.divertUnsupported = divertUnsupported;
+        this.allowedTypes = toBytes(attributeValidator.getAllowedTypes());
+        this.allowedSources = toBytes(attributeValidator.getAllowedSources());
+
+        this.acceptedCounter = Counter.builder(METRIC_NAME)
+            .description("Payment response records checked by the header filter")
+            .tag("result", "accepted")
+            .tag("reason", "none")
+            .register(meterRegistry);
+        this.divertedCounter = Counter.builder(METRIC_NAME)
+            .description("Payment response records checked by the header filter")
+            .tag("result", "diverted")
+            .tag("reason", Reason.NOT_A_CLOUDEVENT.name().toLowerCase(Locale.ROOT))
+            .register(meterRegistry);
+        for (Reason reason : Reason.values()) {
+            filteredCounters.put(reason, Counter.builder(METRIC_NAME)
+                .description("Payment response records checked by the header filter")
+                .tag("result", "filtered")
+                .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @return {@code true} if the record should be discarded
+     */
+    @Override
+    public boolean filter(ConsumerRecord<String, Object> consumerRecord) {
+        Reason reason = check(consumerRecord);
+        if (reason == null) {
+            acceptedCounter.increment();
+            return false;
+        }
+        if (reason == Reason.NOT_A_CLOUDEVENT && divertUnsupported) {
+            divertedCounter.increment();
+            return false;
+        }
+
+        filteredCounters.get(reason).increment();
+        logger.debug("Filtered record from topic: {}, partition: {}, offset: {}, key: {}, reason: {}",
+            consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset(), consumerRecord.key(), reason);
+        return true;
+    }
+
+    /**
+     * Number of records accepted so far
+     */
+    public double getAcceptedCount() {
+        return acceptedCounter.count();
+    }
+
+    /**
+     * Number of records passed on to be dead-lettered so far
+     */
+    public double getDivertedCount() {
+        return divertedCounter.count();
+    }
+
+    /**
+     * Number of records dropped so far for the given reason
+     */
+    public double getFilteredCount(Reason reason) {
+        return filteredCounters.get(reason).count();
+    }
+
+    private Reason check(ConsumerRecord<String, Object> consumerRecord) {
+        if (requireKey && consumerRecord.key() == null) {
+            return Reason.MISSING_KEY;
+        }
+
+        Headers headers = consumerRecord.headers();
+        if (CloudEventHeaders.STRUCTURED_CONTENT_TYPE.matches(headers)) {
+            return null;
+        }
+        if (headers.lastHeader("ce_specversion") == null) {
+            return Reason.NOT_A_CLOUDEVENT;
+        }
+        if (!isAllowed(HeaderBytes.lastValue(headers, "ce_type"), allowedTypes)) {
+            return Reason.TYPE_NOT_ALLOWED;
+        }
+        if (!isAllowed(HeaderBytes.lastValue(headers, "ce_source"), allowedSources)) {
+            return Reason.SOURCE_NOT_ALLOWED;
+        }
+        return null;
+    }
+
+    /**
+     * Linear scan over the allowed values; the lists are a handful of entries, so this beats hashing the header bytes
+     */
+    private static boolean isAllowed(byte[] value, byte[][] allowed) {
+        if (allowed.length == 0) {
+            return true;
+        }
+        for (byte[] candidate : allowed) {
+            if (HeaderBytes.equals(value, candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[][] toBytes(Collection<String> values) {
+        return values.stream()
+            .map(value -> value.getBytes(StandardCharsets.UTF_8))
+            .toArray(byte[][]::new);
+    }
+}
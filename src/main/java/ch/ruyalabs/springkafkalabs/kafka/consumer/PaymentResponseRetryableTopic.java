@@ -0,0 +1,45 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.SameIntervalTopicReuseStrategy;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.retry.annotation.Backoff;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Non-blocking retries for the payment response record listeners.
+ * <p>
+ * A record that fails processing is forwarded to the next retry topic ({@code payment-responses-retry-0},
+ * {@code -1}, ...) instead of being re-seeked on its partition, and ends up in {@code payment-responses-dlt} once
+ * all attempts are used. Every retry topic has its own delay, growing from {@code initial-delay} by
+ * {@code multiplier} up to {@code max-delay}. Names and delays are configured under
+ * {@code payment.kafka.topics.retry}; the topics themselves are created by
+ * {@link ch.ruyalabs.springkafkalabs.config.KafkaTopicConfig}.
+ * <p>
+ * Only transient failures are retried. Poison pills ({@link PoisonPillException}) and records that fail
+ * deserialization skip the retry topics and go to the DLT at once.
+ * <p>
+ * Batch listeners cannot be combined with retry topics, so the batch listener keeps the blocking error handler.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@RetryableTopic(
+    attempts = "${payment.kafka.topics.retry.attempts:4}",
+    backoff = @Backoff(
+        delayExpression = "${payment.kafka.topics.retry.initial-delay:1000}",
+        multiplierExpression = "${payment.kafka.topics.retry.multiplier:5}",
+        maxDelayExpression = "${payment.kafka.topics.retry.max-delay:30000}"),
+    retryTopicSuffix = "${payment.kafka.topics.retry.suffix:-retry}",
+    dltTopicSuffix = "${payment.kafka.topics.retry.dlt-suffix:-dlt}",
+    topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+    sameIntervalTopicReuseStrategy = SameIntervalTopicReuseStrategy.MULTIPLE_TOPICS,
+    autoCreateTopics = "false",
+    exclude = PoisonPillException.class,
+    traversingCauses = "true",
+    kafkaTemplate = "retryKafkaTemplate")
+public @interface PaymentResponseRetryableTopic {
+}
@@ -0,0 +1,26 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+/**
+ * A payment response record that can never be processed, no matter how often it is retried. It is the exception
+ * recorded in the error headers of the record published to the DLT.
+ */
+public class PoisonPillException extends RuntimeException {
+
+    private final PaymentResponseFailure failure;
+
+    public PoisonPillException(PaymentResponseFailure failure, String message) {
+        this(failure, message, null);
+    }
+
+    public PoisonPillException(PaymentResponseFailure failure, String message, Throwable cause) {
+        super(message, cause);
+        if (failure.retryable()) {
+            throw new IllegalArgumentException("Not a poison pill failure: " + failure);
+        }
+        this.failure = failure;
+    }
+
+    public PaymentResponseFailure getFailure() {
+        return failure;
+    }
+}
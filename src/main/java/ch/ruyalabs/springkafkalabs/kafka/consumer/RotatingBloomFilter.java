@@ -0,0 +1,154 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread safe Bloom filter over byte keys that forgets keys after a time window.
+ * <p>
+ * Two generations of bits are kept: keys are added to the current one and looked up in both. Every {@code window}
+ * the older generation is dropped and an empty one becomes current, so a key is remembered for at least one and at
+ * most two windows. Each generation is sized for {@code expectedKeys} per window at half the requested false positive
+ * rate, which keeps the rate of a lookup across both generations at {@code falsePositiveRate}. Memory is fixed at
+ * construction and does not depend on the number of keys added; past {@code expectedKeys} per window the false
+ * positive rate grows.
+ */
+public class RotatingBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long bitsPerGeneration;
+    private final int hashFunctions;
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+    private volatile long rotatedAt;
+
+    public RotatingBloomFilter(long expectedKeys, double falsePositiveRate, Duration window) {
+        this(expectedKeys, falsePositiveRate, window, System::nanoTime);
+    }
+
+    RotatingBloomFilter(long expectedKeys, double falsePositiveRate, Duration window, LongSupplier nanoClock) {
+        if (expectedKeys <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected keys must be positive and the false positive rate in (0, 1)");
+        }
+        double generationRate = falsePositiveRate / 2;
+        long bits = (long) Math.ceil(-expectedKeys * Math.log(generationRate) / (LN2 * LN2));
+        // Whole words, and addressable by an int index into the word array
+        this.bitsPerGeneration = Math.min((bits + 63) & ~63L, (long) Integer.MAX_VALUE * 64);
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitsPerGeneration / expectedKeys * LN2));
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+        this.current = new Generation(bitsPerGeneration);
+        this.previous = new Generation(bitsPerGeneration);
+        this.rotatedAt = nanoClock.getAsLong();
+    }
+
+    /**
+     * {@code true} if the key was probably added within the window, {@code false} if it certainly was not
+     */
+    public boolean mightContain(byte[] key) {
+        rotateIfDue();
+        long hash1 = hash(key);
+        long hash2 = mix(hash1);
+        return current.contains(hash1, hash2) || previous.contains(hash1, hash2);
+    }
+
+    public void put(byte[] key) {
+        rotateIfDue();
+        long hash1 = hash(key);
+        current.add(hash1, mix(hash1));
+    }
+
+    /**
+     * Memory held by the bits of both generations
+     */
+    public long getMemoryBytes() {
+        return 2 * bitsPerGeneration / 8;
+    }
+
+    public long getBitsPerGeneration() {
+        return bitsPerGeneration;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    private void rotateIfDue() {
+        if (nanoClock.getAsLong() - rotatedAt < windowNanos) {
+            return;
+        }
+        synchronized (this) {
+            long now = nanoClock.getAsLong();
+            if (now - rotatedAt >= windowNanos) {
+                // After a long pause both generations are stale
+                previous = now - rotatedAt >= 2 * windowNanos ? new Generation(bitsPerGeneration) : current;
+                current = new Generation(bitsPerGeneration);
+                rotatedAt = now;
+            }
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a of the key
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, used to derive the second hash for double hashing
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash | 1L;
+    }
+
+    private final class Generation {
+
+        private final AtomicLongArray words;
+
+        private Generation(long bits) {
+            this.words = new AtomicLongArray((int) (bits / 64));
+        }
+
+        private boolean contains(long hash1, long hash2) {
+            long combined = hash1;
+            for (int i = 0; i < hashFunctions; i++) {
+                long bit = Long.remainderUnsigned(combined, bitsPerGeneration);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += hash2;
+            }
+            return true;
+        }
+
+        private void add(long hash1, long hash2) {
+            long combined = hash1;
+            for (int i = 0; i < hashFunctions; i++) {
+                long bit = Long.remainderUnsigned(combined, bitsPerGeneration);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                while (((word = words.get(index)) & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                    // Another thread changed the word, retry
+                }
+                combined += hash2;
+            }
+        }
+    }
+}
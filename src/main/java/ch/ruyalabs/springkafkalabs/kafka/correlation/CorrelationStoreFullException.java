@@ -0,0 +1,11 @@
+package ch.ruyalabs.springkafkalabs.kafka.correlation;
+
+/**
+ * Thrown instead of registering when {@code max-pending} payment requests are already awaiting their response
+ */
+public class CorrelationStoreFullException extends RuntimeException {
+
+    public CorrelationStoreFullException(int limit) {
+        super("Too many payment requests awaiting a response (limit " + limit + ")");
+    }
+}
@@ -0,0 +1,13 @@
+package ch.ruyalabs.springkafkalabs.kafka.correlation;
+
+import java.util.UUID;
+
+/**
+ * Thrown when a response is already awaited for the disbursementId being registered
+ */
+public class DuplicateCorrelationException extends RuntimeException {
+
+    public DuplicateCorrelationException(UUID disbursementId) {
+        super("A response is already awaited for disbursementId: " + disbursementId);
+    }
+}
@@ -0,0 +1,303 @@
+package ch.ruyalabs.springkafkalabs.kafka.correlation;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Correlates payment requests with their responses by disbursementId so a caller can wait for the outcome.
+ * <p>
+ * The producer registers a pending future before it sends the request and the consumer completes it when the
+ * response arrives. Lookups go through a {@link ConcurrentHashMap}, so registering and completing stay constant
+ * time with hundreds of thousands of requests pending.
+ * <p>
+ * At most {@code max-pending} requests can wait at a time: a permit is reserved before an entry is added and
+ * released by whoever removes it. Timeouts are kept in a hashed timing wheel: every entry is linked into the bucket
+ * of the tick its deadline falls in, and a single timer task advances the wheel once per tick and completes the
+ * entries of the passed buckets with a {@link TimeoutException}. All entries share one timeout, so the wheel spans
+ * it without rounds and a tick is 1/1024 of the timeout, but at least a millisecond. Adding an entry and unlinking an
+ * answered one are O(1) under the lock of a single bucket, so registrations do not serialize on a global timer queue.
+ * Nothing is retained for answered requests, so memory is bounded by {@code max-pending}.
+ */
+@Component
+public class PaymentCorrelationStore implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentCorrelationStore.class);
+
+    private static final long MIN_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long TICKS_PER_TIMEOUT = 1024;
+
+    private final long timeoutNanos;
+    private final int maxPending;
+    private final Semaphore capacity;
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+    private final long tickNanos;
+    private final long startNanos = System.nanoTime();
+    private final Bucket[] wheel;
+    private final AtomicInteger scheduledTimeouts = new AtomicInteger();
+    // Last tick whose bucket was expired; written by the timer under the lock of that bucket
+    private volatile long expiredTick;
+    private final ScheduledThreadPoolExecutor timer;
+    private final Counter timeoutCounter;
+
+    public PaymentCorrelationStore(@Value("${payment.kafka.correlation.timeout:30s}") Duration timeout,
+                                   @Value("${payment.kafka.correlation.max-pending:500000}") int maxPending,
+                                   MeterRegistry meterRegistry) {
+        this.timeoutNanos = timeout.toNanos();
+        this.maxPending = maxPending;
+        this.capacity = new Semaphore(maxPending);
+        this.tickNanos = Math.max(MIN_TICK_NANOS, ceilDiv(timeoutNanos, TICKS_PER_TIMEOUT));
+        // More buckets than ticks in a timeout, so a deadline never lands in a bucket that is still to expire
+        int buckets = Integer.highestOneBit((int) ceilDiv(timeoutNanos, tickNanos) + 1) << 1;
+        this.wheel = new Bucket[buckets];
+        for (int i = 0; i < buckets; i++) {
+            wheel[i] = new Bucket();
+        }
+
+        Gauge.builder("payment.correlation.pending", pending, Map::size)
+            .description("Payment requests waiting for their response")
+            .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("payment.correlation.timeouts")
+            .description("Payment requests whose response did not arrive in time")
+            .register(meterRegistry);
+
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "payment-correlation-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Start waiting for the response to {@code disbursementId}. Must be called before the request is sent.
+     *
+     * @throws CorrelationStoreFullException if {@code max-pending} requests are already waiting
+     * @throws DuplicateCorrelationException if a response is already awaited for {@code disbursementId}
+     */
+    public CompletableFuture<PaymentDisbursementResponse> register(UUID disbursementId) {
+        if (!capacity.tryAcquire()) {
+            throw new CorrelationStoreFullException(maxPending);
+        }
+        Pending entry = new Pending(disbursementId);
+        schedule(entry);
+        if (pending.putIfAbsent(disbursementId, entry) != null) {
+            cancel(entry);
+            capacity.release();
+            throw new DuplicateCorrelationException(disbursementId);
+        }
+        return entry.future;
+    }
+
+    /**
+     * Hand the response to the waiting caller, if there is one
+     *
+     * @return {@code true} if a caller was waiting for the response
+     */
+    public boolean complete(PaymentDisbursementResponse response) {
+        Pending entry = remove(response.getDisbursementId());
+        return entry != null && entry.future.complete(response);
+    }
+
+    /**
+     * Stop waiting for {@code disbursementId}, e.g. because the request could not be sent
+     */
+    public void fail(UUID disbursementId, Throwable cause) {
+        Pending entry = remove(disbursementId);
+        if (entry != null) {
+            entry.future.completeExceptionally(cause);
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Timeouts linked into the wheel; one per pending request
+     */
+    int getScheduledTimeoutCount() {
+        return scheduledTimeouts.get();
+    }
+
+    /**
+     * Remove the entry of an answered or failed request, cancel its timeout and free its permit
+     */
+    private Pending remove(UUID disbursementId) {
+        Pending entry = pending.remove(disbursementId);
+        if (entry != null) {
+            cancel(entry);
+            capacity.release();
+        }
+        return entry;
+    }
+
+    /**
+     * Link the entry into the bucket of its deadline, or of the next tick if the timer already passed that one
+     */
+    private void schedule(Pending entry) {
+        long tick = ceilDiv(System.nanoTime() + timeoutNanos - startNanos, tickNanos);
+        while (true) {
+            Bucket bucket = wheel[(int) (tick & (wheel.length - 1))];
+            synchronized (bucket) {
+                if (tick > expiredTick) {
+                    bucket.link(entry, tick);
+                    scheduledTimeouts.incrementAndGet();
+                    return;
+                }
+            }
+            tick = expiredTick + 1;
+        }
+    }
+
+    private void cancel(Pending entry) {
+        // The bucket was set before the entry was published to the map
+        Bucket bucket = entry.bucket;
+        synchronized (bucket) {
+            if (bucket.unlink(entry)) {
+                scheduledTimeouts.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Expire the buckets of every tick that passed since the last run; runs on the timer thread only
+     */
+    private void advance() {
+        long currentTick = (System.nanoTime() - startNanos) / tickNanos;
+        while (expiredTick < currentTick) {
+            long tick = expiredTick + 1;
+            Bucket bucket = wheel[(int) (tick & (wheel.length - 1))];
+            List<Pending> due;
+            synchronized (bucket) {
+                due = bucket.unlinkDue(tick);
+                expiredTick = tick;
+            }
+            scheduledTimeouts.addAndGet(-due.size());
+            for (Pending entry : due) {
+                try {
+                    expire(entry);
+                } catch (RuntimeException e) {
+                    // A failing timeout must not stop the wheel
+                    logger.error("Failed to expire the request for disbursementId: {}", entry.disbursementId, e);
+                }
+            }
+        }
+    }
+
+    private void expire(Pending entry) {
+        // Loses against a concurrent complete or fail, which then owns the permit
+        if (!pending.remove(entry.disbursementId, entry)) {
+            return;
+        }
+        capacity.release();
+        timeoutCounter.increment();
+        logger.warn("No payment response within the timeout for disbursementId: {}", entry.disbursementId);
+        entry.future.completeExceptionally(
+            new TimeoutException("No payment response for disbursementId: " + entry.disbursementId));
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    private static final class Pending {
+
+        private final UUID disbursementId;
+        private final CompletableFuture<PaymentDisbursementResponse> future = new CompletableFuture<>();
+        // Guarded by the lock of the bucket, which is set before the entry is published to the map
+        private Bucket bucket;
+        private long tick;
+        private boolean linked;
+        private Pending previous;
+        private Pending next;
+
+        private Pending(UUID disbursementId) {
+            this.disbursementId = disbursementId;
+        }
+    }
+
+    /**
+     * Doubly linked list of the entries whose deadline falls in the ticks of one wheel slot; callers hold its lock
+     */
+    private static final class Bucket {
+
+        private Pending head;
+        private Pending tail;
+
+        private void link(Pending entry, long tick) {
+            entry.bucket = this;
+            entry.tick = tick;
+            entry.linked = true;
+            entry.previous = tail;
+            entry.next = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+        }
+
+        private boolean unlink(Pending entry) {
+            if (!entry.linked) {
+                return false;
+            }
+            if (entry.previous == null) {
+                head = entry.next;
+            } else {
+                entry.previous.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.previous;
+            } else {
+                entry.next.previous = entry.previous;
+            }
+            entry.linked = false;
+            entry.previous = null;
+            entry.next = null;
+            return true;
+        }
+
+        /**
+         * Unlink the entries due at {@code tick}; entries of a later round of the wheel stay
+         */
+        private List<Pending> unlinkDue(long tick) {
+            List<Pending> due = new ArrayList<>();
+            Pending entry = head;
+            while (entry != null) {
+                Pending next = entry.next;
+                if (entry.tick <= tick) {
+                    unlink(entry);
+                    due.add(entry);
+                }
+                entry = next;
+            }
+            return due;
+        }
+    }
+}
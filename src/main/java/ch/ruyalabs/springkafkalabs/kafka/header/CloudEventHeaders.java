@@ -0,0 +1,16 @@
+package ch.ruyalabs.springkafkalabs.kafka.header;
+
+/**
+ * Header matchers for payment CloudEvents, shared by the filter, the duplicate check and the consumer
+ */
+public final class CloudEventHeaders {
+
+    /**
+     * Content type of a CloudEvent in structured mode; the charset and other parameters are ignored
+     */
+    public static final HeaderMatcher STRUCTURED_CONTENT_TYPE =
+        HeaderMatcher.mediaType("content-type", "application/cloudevents+json");
+
+    private CloudEventHeaders() {
+    }
+}
@@ -0,0 +1,69 @@
+package ch.ruyalabs.springkafkalabs.kafka.header;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * Allocation free helpers for reading Kafka header values as raw bytes.
+ * <p>
+ * Header values are compared and parsed in place; nothing here creates a String from a header value.
+ */
+public final class HeaderBytes {
+
+    private HeaderBytes() {
+    }
+
+    /**
+     * Value of the last header with the given key, or {@code null} if the header is absent
+     */
+    public static byte[] lastValue(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header != null ? header.value() : null;
+    }
+
+    /**
+     * Case sensitive comparison of {@code value} with the expected bytes
+     */
+    public static boolean equals(byte[] value, byte[] expected) {
+        if (value == null || value.length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (value[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ASCII case insensitive check whether {@code value} contains {@code lowerCaseExpected} at {@code offset}.
+     * The expected bytes must already be lower case.
+     */
+    public static boolean regionMatchesIgnoreCase(byte[] value, int offset, byte[] lowerCaseExpected) {
+        if (offset < 0 || value.length - offset < lowerCaseExpected.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseExpected.length; i++) {
+            if (toLowerCase(value[offset + i]) != lowerCaseExpected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Index of the first byte at or after {@code offset} that is neither a space nor a horizontal tab
+     */
+    public static int skipWhitespace(byte[] value, int offset) {
+        int i = offset;
+        while (i < value.length && (value[i] == ' ' || value[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
@@ -0,0 +1,100 @@
+package ch.ruyalabs.springkafkalabs.kafka.header;
+
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Precompiled matcher for a single Kafka header, working directly on the header value bytes.
+ * <p>
+ * The expected value is encoded once when the matcher is created, so {@link #matches(Headers)} does not allocate.
+ * Instances are immutable and can be shared between threads; keep them in static or instance fields.
+ */
+public final class HeaderMatcher {
+
+    private enum Mode {
+        EXACT,
+        PREFIX,
+        MEDIA_TYPE
+    }
+
+    private final String headerName;
+    private final byte[] expected;
+    private final Mode mode;
+
+    private HeaderMatcher(String headerName, byte[] expected, Mode mode) {
+        this.headerName = headerName;
+        this.expected = expected;
+        this.mode = mode;
+    }
+
+    /**
+     * Case sensitive match of the whole value, e.g. for ce_type or ce_source
+     */
+    public static HeaderMatcher exact(String headerName, String value) {
+        return new HeaderMatcher(headerName, value.getBytes(StandardCharsets.UTF_8), Mode.EXACT);
+    }
+
+    /**
+     * ASCII case insensitive match of the beginning of the value
+     */
+    public static HeaderMatcher prefix(String headerName, String prefix) {
+        return new HeaderMatcher(headerName, lowerCaseAscii(prefix), Mode.PREFIX);
+    }
+
+    /**
+     * ASCII case insensitive match of the media type of a content type value, ignoring parameters such as
+     * charset, e.g. {@code application/cloudevents+json} matches {@code Application/CloudEvents+JSON; charset=UTF-8}
+     */
+    public static HeaderMatcher mediaType(String headerName, String mediaType) {
+        return new HeaderMatcher(headerName, lowerCaseAscii(mediaType), Mode.MEDIA_TYPE);
+    }
+
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    /**
+     * Match the last header with this matcher's name; {@code false} if the header is absent
+     */
+    public boolean matches(Headers headers) {
+        return matches(HeaderBytes.lastValue(headers, headerName));
+    }
+
+    /**
+     * Match a raw header value; {@code false} for {@code null}
+     */
+    public boolean matches(byte[] value) {
+        if (value == null) {
+            return false;
+        }
+        switch (mode) {
+            case EXACT:
+                return HeaderBytes.equals(value, expected);
+            case PREFIX:
+                return HeaderBytes.regionMatchesIgnoreCase(value, 0, expected);
+            default:
+                return matchesMediaType(value);
+        }
+    }
+
+    private boolean matchesMediaType(byte[] value) {
+        int start = HeaderBytes.skipWhitespace(value, 0);
+        if (!HeaderBytes.regionMatchesIgnoreCase(value, start, expected)) {
+            return false;
+        }
+        int end = start + expected.length;
+        // The media type has to end here, either at the end of the value or before its parameters
+        return end == value.length || value[end] == ';' || value[end] == ' ' || value[end] == '\t';
+    }
+
+    private static byte[] lowerCaseAscii(String value) {
+        return value.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return "HeaderMatcher{" + headerName + " " + mode + " '" + new String(expected, StandardCharsets.UTF_8) + "'}";
+    }
+}
@@ -0,0 +1,123 @@
+package ch.ruyalabs.springkafkalabs.kafka.producer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of payment requests that were handed to the producer but not yet acknowledged or failed.
+ * <p>
+ * A permit is taken before a send and released when the send future completes. When all permits are taken,
+ * {@link Policy#FAIL_FAST} rejects the send immediately and {@link Policy#WAIT} waits up to {@code max-wait} for a
+ * permit; either way a {@link ProducerSaturatedException} is thrown instead of letting the request block on a full
+ * producer buffer. The current and maximum number of in-flight sends and the rejections are exported as
+ * {@code payment.producer.in-flight}, {@code payment.producer.in-flight.limit} and
+ * {@code payment.producer.rejected}.
+ * <p>
+ * Callers that can pause their input instead of rejecting it, like the bulk endpoint reading its request body, use
+ * {@link #acquireBlocking()}, which waits for a permit whatever the policy.
+ */
+@Component
+public class InFlightLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(InFlightLimiter.class);
+
+    /**
+     * What to do when no permit is available
+     */
+    public enum Policy {
+        FAIL_FAST,
+        WAIT
+    }
+
+    private final int limit;
+    private final Policy policy;
+    private final Duration maxWait;
+    private final Duration retryAfter;
+    private final Semaphore permits;
+    private final Counter rejectedCounter;
+
+    public InFlightLimiter(@Value("${payment.kafka.producer.in-flight.max:10000}") int limit,
+                           @Value("${payment.kafka.producer.in-flight.policy:fail-fast}") String policy,
+                           @Value("${payment.kafka.producer.in-flight.max-wait:100ms}") Duration maxWait,
+                           @Value("${payment.kafka.producer.in-flight.retry-after:1s}") Duration retryAfter,
+                           MeterRegistry meterRegistry) {
+        this.limit = limit;
+        this.policy = Policy.valueOf(policy.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        this.maxWait = maxWait;
+        this.retryAfter = retryAfter;
+        this.permits = new Semaphore(limit);
+
+        Gauge.builder("payment.producer.in-flight", this, InFlightLimiter::getInFlight)
+            .description("Payment requests sent but not yet acknowledged")
+            .register(meterRegistry);
+        Gauge.builder("payment.producer.in-flight.limit", this, InFlightLimiter::getLimit)
+            .description("Maximum number of payment requests in flight")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("payment.producer.rejected")
+            .description("Payment requests rejected because too many were in flight")
+            .tag("policy", this.policy.name().toLowerCase(Locale.ROOT))
+            .register(meterRegistry);
+
+        logger.info("In-flight limit for payment requests: {} ({})", limit, this.policy);
+    }
+
+    /**
+     * Take a permit according to the policy, or throw {@link ProducerSaturatedException}.
+     * Every successful call must be paired with exactly one {@link #release()}.
+     */
+    public void acquire() {
+        if (tryAcquire()) {
+            return;
+        }
+        rejectedCounter.increment();
+        throw new ProducerSaturatedException(limit, policy, retryAfter);
+    }
+
+    /**
+     * Wait as long as it takes for a permit, independent of the policy. Every successful call must be paired with
+     * exactly one {@link #release()}; throws {@link ProducerSaturatedException} only if the thread is interrupted.
+     */
+    public void acquireBlocking() {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedCounter.increment();
+            throw new ProducerSaturatedException(limit, policy, retryAfter);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getInFlight() {
+        return limit - permits.availablePermits();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private boolean tryAcquire() {
+        if (policy == Policy.FAIL_FAST) {
+            return permits.tryAcquire();
+        }
+        try {
+            return permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ch.ruyalabs.springkafkalabs.kafka.producer;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.data.PojoCloudEventData;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes the outcome of every processed payment response as a CloudEvent to {@code payment.kafka.topics.outcome},
+ * keyed by disbursementId, for downstream consumers. Nothing is published if the topic is empty.
+ * <p>
+ * Sends made on the listener thread of a transactional container join its transaction, so the outcome becomes
+ * visible to {@code read_committed} consumers only together with the offset of the response it came from.
+ * <p>
+ * The CloudEvent id of an outcome is derived from the topic, partition and offset of that response, so an outcome
+ * published again after a redelivery carries the same id and can be deduplicated downstream.
+ */
+@Component
+public class PaymentOutcomeProducer {
+
+    private static final String CLOUD_EVENT_SOURCE = "payment-service";
+    private static final String CLOUD_EVENT_TYPE = "com.ruyalabs.payment.disbursement.outcome";
+    private static final String CLOUD_EVENT_DATA_CONTENT_TYPE = "application/json";
+
+    private final KafkaTemplate<String, CloudEvent> kafkaTemplate;
+    private final String topicName;
+    private final ObjectMapper objectMapper;
+
+    public PaymentOutcomeProducer(@Qualifier("outcomeKafkaTemplate") KafkaTemplate<String, CloudEvent> kafkaTemplate,
+                                  @Value("${payment.kafka.topics.outcome:}") String topicName,
+                                  ObjectMapper objectMapper) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.topicName = topicName;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return !topicName.isBlank();
+    }
+
+    /**
+     * Send the outcome of a payment response processed from {@code source}; the returned future completes with the
+     * acknowledgement
+     */
+    public CompletableFuture<SendResult<String, CloudEvent>> send(ConsumerRecord<?, ?> source,
+                                                                  PaymentDisbursementResponse response) {
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(outcomeId(source))
+                .withSource(URI.create(CLOUD_EVENT_SOURCE))
+                .withType(CLOUD_EVENT_TYPE)
+                .withDataContentType(CLOUD_EVENT_DATA_CONTENT_TYPE)
+                .withTime(OffsetDateTime.now())
+                .withData(PojoCloudEventData.wrap(response, objectMapper::writeValueAsBytes))
+                .build();
+        return kafkaTemplate.send(topicName, String.valueOf(response.getDisbursementId()), cloudEvent);
+    }
+
+    /**
+     * Name based UUID of the response record, the same for every delivery of that record
+     */
+    static String outcomeId(ConsumerRecord<?, ?> source) {
+        String position = source.topic() + "-" + source.partition() + "@" + source.offset();
+        return UUID.nameUUIDFromBytes(position.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}
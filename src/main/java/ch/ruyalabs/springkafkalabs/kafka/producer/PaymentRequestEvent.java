@@ -0,0 +1,78 @@
+package ch.ruyalabs.springkafkalabs.kafka.producer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event of one payment request sent by {@link PaymentRequestProducer}, from building the CloudEvent
+ * to the broker acknowledgement. It is committed on the thread that completes the send, usually the producer's
+ * network thread.
+ * <p>
+ * Use {@link #start()}, which returns {@code null} unless the event is enabled in a running recording, so nothing is
+ * allocated or measured for it otherwise.
+ */
+@Name(PaymentRequestEvent.NAME)
+@Label("Payment Request Sent")
+@Category({"Payment", "Producer"})
+@Description("A payment request sent to Kafka, with the time to build, hand over and acknowledge it")
+@StackTrace(false)
+class PaymentRequestEvent extends Event {
+
+    static final String NAME = "ch.ruyalabs.payment.RequestSent";
+
+    private static final EventType TYPE = EventType.getEventType(PaymentRequestEvent.class);
+
+    @Label("Topic")
+    String topic;
+
+    @Label("Disbursement Id")
+    String disbursementId;
+
+    @Label("Partition")
+    int partition = -1;
+
+    @Label("Offset")
+    long offset = -1;
+
+    @Label("Value Size")
+    @Description("Serialized record value, as reported by the producer")
+    @DataAmount
+    int valueSize = -1;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Build")
+    @Description("Building the CloudEvent")
+    @Timespan
+    long buildTime;
+
+    @Label("Send")
+    @Description("Handing the record to the producer: serialization, partitioning and appending to a batch")
+    @Timespan
+    long sendTime;
+
+    @Label("Acknowledge")
+    @Description("Waiting for the broker acknowledgement")
+    @Timespan
+    long ackTime;
+
+    /**
+     * A started event, or {@code null} if the event is not recorded
+     */
+    static PaymentRequestEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        PaymentRequestEvent event = new PaymentRequestEvent();
+        event.begin();
+        return event;
+    }
+}
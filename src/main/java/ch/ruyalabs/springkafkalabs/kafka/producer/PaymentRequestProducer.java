@@ -1,6 +1,8 @@
 package ch.ruyalabs.springkafkalabs.kafka.producer;
 
+import ch.ruyalabs.springkafkalabs.kafka.correlation.PaymentCorrelationStore;
 import ch.ruyalabs.types.PaymentDisbursementRequest;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.CloudEventData;
@@ -8,16 +10,26 @@ import io.cloudevents.core.CloudEventUtils;
 import io.cloudevents.core.builder.CloudEventBuilder;
 import io.cloudevents.core.data.PojoCloudEventData;
 import io.cloudevents.jackson.PojoCloudEventDataMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
 import java.net.URI;
 import java.time.OffsetDateTime;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends payment requests as CloudEvents. The time from building the event to the broker acknowledgement (or the
+ * failure) is exported as {@code payment.producer.send}, tagged with {@code topic} and {@code outcome}, and broken
+ * down by step in a {@link PaymentRequestEvent} while it is being recorded.
+ */
 @Component
 public class PaymentRequestProducer {
 
@@ -30,16 +42,85 @@ public class PaymentRequestProducer {
     private final KafkaTemplate<String, CloudEvent> kafkaTemplate;
     private final String topicName;
     private final ObjectMapper objectMapper;
+    private final InFlightLimiter inFlightLimiter;
+    private final PaymentCorrelationStore correlationStore;
+    private final Timer sendSuccessTimer;
+    private final Timer sendErrorTimer;
 
     public PaymentRequestProducer(KafkaTemplate<String, CloudEvent> kafkaTemplate,
-                                  @Value("${payment.kafka.topics.request}") String topicName, ObjectMapper objectMapper) {
+                                  @Value("${payment.kafka.topics.request}") String topicName, ObjectMapper objectMapper,
+                                  InFlightLimiter inFlightLimiter, PaymentCorrelationStore correlationStore,
+                                  MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
         this.topicName = topicName;
         this.objectMapper = objectMapper;
+        this.inFlightLimiter = inFlightLimiter;
+        this.correlationStore = correlationStore;
+        this.sendSuccessTimer = sendTimer(meterRegistry, "success");
+        this.sendErrorTimer = sendTimer(meterRegistry, "error");
+    }
+
+    private Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("payment.producer.send")
+            .description("Time from building a payment request event to its broker acknowledgement")
+            .tag("topic", topicName)
+            .tag("outcome", outcome)
+            .register(meterRegistry);
     }
 
 
     public void sendPaymentRequest(PaymentDisbursementRequest request) {
+        sendPaymentRequestAsync(request);
+    }
+
+    /**
+     * Send the payment request and wait for its payment response instead of the broker acknowledgement; the
+     * returned future completes with the response, or with a {@link java.util.concurrent.TimeoutException} if none
+     * arrives in time
+     */
+    public CompletableFuture<PaymentDisbursementResponse> sendPaymentRequestAndAwaitResponse(
+            PaymentDisbursementRequest request) {
+        UUID disbursementId = request.getDisbursementId();
+        // Registered before sending, the response must not arrive before anyone waits for it
+        CompletableFuture<PaymentDisbursementResponse> response = correlationStore.register(disbursementId);
+        try {
+            sendPaymentRequestAsync(request).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    correlationStore.fail(disbursementId, ex);
+                }
+            });
+        } catch (RuntimeException e) {
+            correlationStore.fail(disbursementId, e);
+            throw e;
+        }
+        return response;
+    }
+
+    /**
+     * Send the payment request without waiting for the broker; the returned future completes with the
+     * partition and offset once the record is acknowledged.
+     * Throws {@link ProducerSaturatedException} if the in-flight limit is reached.
+     */
+    public CompletableFuture<SendResult<String, CloudEvent>> sendPaymentRequestAsync(PaymentDisbursementRequest request) {
+        inFlightLimiter.acquire();
+        return send(request);
+    }
+
+    /**
+     * Like {@link #sendPaymentRequestAsync}, but waits for a free in-flight slot instead of applying the limit
+     * policy, so a caller producing many requests is paced by the broker acks.
+     */
+    public CompletableFuture<SendResult<String, CloudEvent>> sendPaymentRequestAsyncWhenFree(PaymentDisbursementRequest request) {
+        inFlightLimiter.acquireBlocking();
+        return send(request);
+    }
+
+    /**
+     * Send with an in-flight permit already taken; the permit is released when the send completes or fails
+     */
+    private CompletableFuture<SendResult<String, CloudEvent>> send(PaymentDisbursementRequest request) {
+        long start = System.nanoTime();
+        PaymentRequestEvent event = PaymentRequestEvent.start();
         try {
             PojoCloudEventData<PaymentDisbursementRequest> wrapped =
                     PojoCloudEventData.wrap(request, objectMapper::writeValueAsBytes);
@@ -55,8 +136,21 @@ public class PaymentRequestProducer {
 
             String key = request.getDisbursementId().toString();
 
-            kafkaTemplate.send(topicName, key, cloudEvent)
+            long sendStart = System.nanoTime();
+            CompletableFuture<SendResult<String, CloudEvent>> sent = kafkaTemplate.send(topicName, key, cloudEvent);
+            // Taken before the callback is attached, which runs right away if the send already failed
+            long handedOver = System.nanoTime();
+            return sent
                     .whenComplete((result, ex) -> {
+                        inFlightLimiter.release();
+                        long end = System.nanoTime();
+                        (ex == null ? sendSuccessTimer : sendErrorTimer).record(end - start, TimeUnit.NANOSECONDS);
+                        if (event != null) {
+                            event.buildTime = sendStart - start;
+                            event.sendTime = handedOver - sendStart;
+                            event.ackTime = end - handedOver;
+                            commit(event, request, result, ex == null);
+                        }
                         if (ex == null) {
                             logger.info("Payment request sent successfully for disbursementId: {}",
                                     request.getDisbursementId());
@@ -66,9 +160,28 @@ public class PaymentRequestProducer {
                         }
                     });
         } catch (Exception e) {
+            // The send never started, so nothing else will give the permit back
+            inFlightLimiter.release();
+            sendErrorTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (event != null) {
+                commit(event, request, null, false);
+            }
             logger.error("Error creating CloudEvent for payment request: {}",
                     request.getDisbursementId(), e);
             throw new RuntimeException("Failed to send payment request", e);
         }
     }
+
+    private void commit(PaymentRequestEvent event, PaymentDisbursementRequest request,
+                        SendResult<String, CloudEvent> result, boolean success) {
+        event.topic = topicName;
+        event.disbursementId = String.valueOf(request.getDisbursementId());
+        event.outcome = success ? "success" : "error";
+        if (result != null && result.getRecordMetadata() != null) {
+            event.partition = result.getRecordMetadata().partition();
+            event.offset = result.getRecordMetadata().offset();
+            event.valueSize = result.getRecordMetadata().serializedValueSize();
+        }
+        event.commit();
+    }
 }
@@ -0,0 +1,29 @@
+package ch.ruyalabs.springkafkalabs.kafka.producer;
+
+import java.time.Duration;
+
+/**
+ * Thrown instead of sending when the in-flight limit of the payment request producer is reached
+ */
+public class ProducerSaturatedException extends RuntimeException {
+
+    private final InFlightLimiter.Policy policy;
+    private final Duration retryAfter;
+
+    public ProducerSaturatedException(int limit, InFlightLimiter.Policy policy, Duration retryAfter) {
+        super("Too many payment requests in flight (limit " + limit + ")");
+        this.policy = policy;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * {@link InFlightLimiter.Policy#WAIT} if the send waited for a permit and timed out
+     */
+    public InFlightLimiter.Policy getPolicy() {
+        return policy;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
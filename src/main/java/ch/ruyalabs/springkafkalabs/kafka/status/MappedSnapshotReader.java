@@ -0,0 +1,79 @@
+package ch.ruyalabs.springkafkalabs.kafka.status;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential reader of a file written by {@link MappedSnapshotWriter}, mapped read-only region by region
+ */
+final class MappedSnapshotReader implements Closeable {
+
+    private final FileChannel channel;
+    private final long size;
+    private final int regionSize;
+    private MappedByteBuffer buffer;
+    private long regionStart;
+
+    MappedSnapshotReader(Path path) throws IOException {
+        this(path, MappedSnapshotWriter.REGION_SIZE);
+    }
+
+    MappedSnapshotReader(Path path, int regionSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.regionSize = regionSize;
+        map(0);
+    }
+
+    byte getByte() throws IOException {
+        ensure(Byte.BYTES);
+        return buffer.get();
+    }
+
+    short getShort() throws IOException {
+        ensure(Short.BYTES);
+        return buffer.getShort();
+    }
+
+    int getInt() throws IOException {
+        ensure(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long getLong() throws IOException {
+        ensure(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    void getBytes(byte[] target, int offset, int length) throws IOException {
+        ensure(length);
+        buffer.get(target, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            long position = regionStart + buffer.position();
+            if (size - position < bytes) {
+                throw new EOFException("Snapshot is truncated at byte " + position);
+            }
+            map(position);
+        }
+    }
+
+    private void map(long position) throws IOException {
+        regionStart = position;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+            Math.min(regionSize, size - position));
+    }
+}
@@ -0,0 +1,92 @@
+package ch.ruyalabs.springkafkalabs.kafka.status;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential writer into a memory-mapped file. The file is mapped in regions of {@value #REGION_SIZE} bytes, so
+ * snapshots may be larger than the 2 GB limit of a single mapping; on close the file is flushed to disk and cut to
+ * the written size.
+ */
+final class MappedSnapshotWriter implements Closeable {
+
+    static final int REGION_SIZE = 64 << 20;
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private MappedByteBuffer buffer;
+    private long regionStart;
+
+    MappedSnapshotWriter(Path path) throws IOException {
+        this(path, REGION_SIZE);
+    }
+
+    MappedSnapshotWriter(Path path, int regionSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.regionSize = regionSize;
+        map(0);
+    }
+
+    void putByte(byte value) throws IOException {
+        ensure(Byte.BYTES);
+        buffer.put(value);
+    }
+
+    void putShort(short value) throws IOException {
+        ensure(Short.BYTES);
+        buffer.putShort(value);
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Write {@code length} bytes of {@code source}; {@code length} must not exceed the region size
+     */
+    void putBytes(byte[] source, int offset, int length) throws IOException {
+        ensure(length);
+        buffer.put(source, offset, length);
+    }
+
+    long position() {
+        return regionStart + buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long size = position();
+            buffer.force();
+            buffer = null;
+            channel.truncate(size);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            long position = position();
+            buffer.force();
+            map(position);
+        }
+    }
+
+    private void map(long position) throws IOException {
+        regionStart = position;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, regionSize);
+    }
+}
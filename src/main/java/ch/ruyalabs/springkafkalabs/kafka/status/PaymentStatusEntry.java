@@ -0,0 +1,15 @@
+package ch.ruyalabs.springkafkalabs.kafka.status;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Latest known payment status of a disbursement, as kept by {@link PaymentStatusIndex}
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PaymentStatusEntry(UUID disbursementId, PaymentDisbursementResponse.Status status, String transactionId,
+                                 Instant updatedAt) {
+}
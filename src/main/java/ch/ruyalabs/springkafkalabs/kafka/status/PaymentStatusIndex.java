@@ -0,0 +1,413 @@
+package ch.ruyalabs.springkafkalabs.kafka.status;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the latest consumed payment status per disbursementId.
+ * <p>
+ * Entries live in parallel primitive arrays addressed by open addressing with linear probing: the UUID as two
+ * longs, the status as a byte (0 marks a free slot), the timestamp as epoch millis and the offset of the
+ * transactionId in a shared byte arena, where it is stored as UTF-8 behind a two byte length. A slot takes
+ * 8 + 8 + 1 + 8 + 4 = 29 bytes; at the maximum load factor of 0.75 that is about 39 bytes per entry, plus
+ * 2 bytes and the length of the transactionId in the arena (about 16 bytes for {@code txn_1234567890}), so roughly
+ * 55 bytes per entry instead of several hundred for a {@code HashMap<UUID, Object>}. Nothing is boxed, so the
+ * index adds no per-entry objects for the garbage collector to trace.
+ * <p>
+ * Entries are never removed. A changed transactionId is appended to the arena and the old bytes stay unused.
+ * Reads run in parallel, writes are serialized.
+ * <p>
+ * Next to the entries the index keeps, per topic partition, the offset after the last record it reflects. Positions
+ * are lock-free counters that only move forward, so recording one does not contend with the entries. Both are
+ * written to and restored from a snapshot together (see {@link PaymentStatusSnapshotter}), so after a restore the
+ * consumer can seek each partition to its stored offset and replay only what the snapshot is missing.
+ */
+@Component
+public class PaymentStatusIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentStatusIndex.class);
+
+    private static final PaymentDisbursementResponse.Status[] STATUSES = PaymentDisbursementResponse.Status.values();
+
+    private static final byte FREE = 0;
+    private static final int NO_TRANSACTION_ID = -1;
+    private static final double MAX_LOAD = 0.75;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private static final int SNAPSHOT_MAGIC = 0x50534931; // "PSI1"
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private byte[] statuses;
+    private long[] timestamps;
+    private int[] transactionIdOffsets;
+    private byte[] arena;
+    private int arenaSize;
+    private int size;
+    private final Map<TopicPartition, AtomicLong> positions = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Long> restoredPositions = new ConcurrentHashMap<>();
+
+    public PaymentStatusIndex(@Value("${payment.kafka.status-index.initial-capacity:65536}") int initialCapacity,
+                              MeterRegistry meterRegistry) {
+        allocate(tableSizeFor(initialCapacity));
+        this.arena = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024L, initialCapacity * 16L))];
+
+        Gauge.builder("payment.status.index.entries", this, PaymentStatusIndex::size)
+            .description("Disbursements with a known payment status")
+            .register(meterRegistry);
+        Gauge.builder("payment.status.index.memory", this, PaymentStatusIndex::getMemoryBytes)
+            .description("Memory of the payment status index")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+
+        logger.info("Payment status index with {} slots", mostSigBits.length);
+    }
+
+    /**
+     * Record the status of the response, replacing the previous status of its disbursement
+     */
+    public void update(PaymentDisbursementResponse response) {
+        UUID disbursementId = response.getDisbursementId();
+        Date processedAt = response.getProcessedAt();
+        put(disbursementId.getMostSignificantBits(), disbursementId.getLeastSignificantBits(),
+            (byte) (response.getStatus().ordinal() + 1),
+            processedAt != null ? processedAt.getTime() : System.currentTimeMillis(),
+            response.getTransactionId());
+    }
+
+    /**
+     * Latest status of the disbursement, or {@code null} if no response was consumed for it
+     */
+    public PaymentStatusEntry get(UUID disbursementId) {
+        long msb = disbursementId.getMostSignificantBits();
+        long lsb = disbursementId.getLeastSignificantBits();
+        lock.readLock().lock();
+        try {
+            int slot = find(msb, lsb);
+            if (statuses[slot] == FREE) {
+                return null;
+            }
+            return new PaymentStatusEntry(disbursementId, STATUSES[statuses[slot] - 1],
+                readTransactionId(transactionIdOffsets[slot]), Instant.ofEpochMilli(timestamps[slot]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remember that the index reflects {@code partition} up to, but not including, {@code nextOffset}
+     */
+    public void recordPosition(String topic, int partition, long nextOffset) {
+        recordPosition(new TopicPartition(topic, partition), nextOffset);
+    }
+
+    /**
+     * Remember that the index reflects {@code topicPartition} up to, but not including, {@code nextOffset}
+     */
+    public void recordPosition(TopicPartition topicPartition, long nextOffset) {
+        AtomicLong position = positions.get(topicPartition);
+        if (position == null) {
+            position = positions.computeIfAbsent(topicPartition, key -> new AtomicLong());
+        }
+        position.accumulateAndGet(nextOffset, Math::max);
+    }
+
+    /**
+     * Offset the partition has to be consumed from to bring the index up to date after a restore, or {@code null}
+     * if the snapshot did not cover the partition or the offset was already taken
+     */
+    public Long takeRestoredPosition(TopicPartition topicPartition) {
+        return restoredPositions.remove(topicPartition);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Memory held by the slot arrays and the transactionId arena
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) mostSigBits.length * (8 + 8 + 1 + 8 + 4) + arena.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the positions and all entries. The entries are copied under the read lock with a few array copies and
+     * written afterwards, so updates only wait for the copy, not for the snapshot file.
+     */
+    void writeSnapshot(MappedSnapshotWriter out) throws IOException {
+        // Positions are taken before the entries, so the entries reflect at least what the positions claim
+        Map<TopicPartition, Long> positionCopy = new HashMap<>();
+        positions.forEach((topicPartition, position) -> positionCopy.put(topicPartition, position.get()));
+        long[] msbCopy;
+        long[] lsbCopy;
+        byte[] statusCopy;
+        long[] timestampCopy;
+        int[] offsetCopy;
+        byte[] arenaCopy;
+        int sizeCopy;
+        lock.readLock().lock();
+        try {
+            msbCopy = mostSigBits.clone();
+            lsbCopy = leastSigBits.clone();
+            statusCopy = statuses.clone();
+            timestampCopy = timestamps.clone();
+            offsetCopy = transactionIdOffsets.clone();
+            arenaCopy = Arrays.copyOf(arena, arenaSize);
+            sizeCopy = size;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        out.putInt(SNAPSHOT_MAGIC);
+        out.putInt(positionCopy.size());
+        for (Map.Entry<TopicPartition, Long> position : positionCopy.entrySet()) {
+            byte[] topic = position.getKey().topic().getBytes(StandardCharsets.UTF_8);
+            out.putShort((short) topic.length);
+            out.putBytes(topic, 0, topic.length);
+            out.putInt(position.getKey().partition());
+            out.putLong(position.getValue());
+        }
+        out.putInt(sizeCopy);
+        for (int slot = 0; slot < statusCopy.length; slot++) {
+            if (statusCopy[slot] == FREE) {
+                continue;
+            }
+            out.putLong(msbCopy[slot]);
+            out.putLong(lsbCopy[slot]);
+            out.putByte(statusCopy[slot]);
+            out.putLong(timestampCopy[slot]);
+            int offset = offsetCopy[slot];
+            if (offset == NO_TRANSACTION_ID) {
+                out.putInt(NO_TRANSACTION_ID);
+            } else {
+                int length = readLength(arenaCopy, offset);
+                out.putInt(length);
+                out.putBytes(arenaCopy, offset + 2, length);
+            }
+        }
+        // Trailer, a snapshot cut short is rejected on restore
+        out.putInt(SNAPSHOT_MAGIC);
+    }
+
+    /**
+     * Replace the contents of the index with the snapshot. The index is left empty if the snapshot is invalid.
+     */
+    void restoreSnapshot(MappedSnapshotReader in) throws IOException {
+        lock.writeLock().lock();
+        try {
+            clear();
+            if (in.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a payment status index snapshot");
+            }
+            Map<TopicPartition, Long> snapshotPositions = new HashMap<>();
+            int positionCount = in.getInt();
+            for (int i = 0; i < positionCount; i++) {
+                byte[] topic = new byte[in.getShort() & 0xffff];
+                in.getBytes(topic, 0, topic.length);
+                snapshotPositions.put(new TopicPartition(new String(topic, StandardCharsets.UTF_8), in.getInt()),
+                    in.getLong());
+            }
+
+            int entryCount = in.getInt();
+            allocate(Math.max(mostSigBits.length, tableSizeFor(entryCount)));
+            byte[] transactionId = new byte[0xffff];
+            for (int i = 0; i < entryCount; i++) {
+                long msb = in.getLong();
+                long lsb = in.getLong();
+                byte status = in.getByte();
+                long timestamp = in.getLong();
+                int length = in.getInt();
+                int slot = find(msb, lsb);
+                mostSigBits[slot] = msb;
+                leastSigBits[slot] = lsb;
+                statuses[slot] = status;
+                timestamps[slot] = timestamp;
+                if (length == NO_TRANSACTION_ID) {
+                    transactionIdOffsets[slot] = NO_TRANSACTION_ID;
+                } else {
+                    in.getBytes(transactionId, 0, length);
+                    transactionIdOffsets[slot] = appendTransactionId(transactionId, length);
+                }
+                size++;
+            }
+            if (in.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Payment status index snapshot is incomplete");
+            }
+            snapshotPositions.forEach((topicPartition, position) ->
+                positions.put(topicPartition, new AtomicLong(position)));
+            restoredPositions.putAll(snapshotPositions);
+        } catch (IOException | RuntimeException e) {
+            clear();
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clear() {
+        allocate(mostSigBits.length);
+        arenaSize = 0;
+        size = 0;
+        positions.clear();
+        restoredPositions.clear();
+    }
+
+    private void put(long msb, long lsb, byte status, long timestamp, String transactionId) {
+        lock.writeLock().lock();
+        try {
+            int slot = find(msb, lsb);
+            if (statuses[slot] == FREE) {
+                if (size + 1 > mostSigBits.length * MAX_LOAD) {
+                    resize();
+                    slot = find(msb, lsb);
+                }
+                mostSigBits[slot] = msb;
+                leastSigBits[slot] = lsb;
+                transactionIdOffsets[slot] = NO_TRANSACTION_ID;
+                size++;
+            }
+            statuses[slot] = status;
+            timestamps[slot] = timestamp;
+            if (!sameTransactionId(transactionIdOffsets[slot], transactionId)) {
+                transactionIdOffsets[slot] = appendTransactionId(transactionId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Slot holding the UUID, or the free slot where it belongs
+     */
+    private int find(long msb, long lsb) {
+        int mask = mostSigBits.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (statuses[slot] != FREE && (mostSigBits[slot] != msb || leastSigBits[slot] != lsb)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        if (mostSigBits.length >= MAX_CAPACITY) {
+            throw new IllegalStateException("Payment status index is full (" + size + " entries)");
+        }
+        long[] oldMsb = mostSigBits;
+        long[] oldLsb = leastSigBits;
+        byte[] oldStatuses = statuses;
+        long[] oldTimestamps = timestamps;
+        int[] oldOffsets = transactionIdOffsets;
+
+        allocate(oldMsb.length * 2);
+        for (int i = 0; i < oldMsb.length; i++) {
+            if (oldStatuses[i] != FREE) {
+                int slot = find(oldMsb[i], oldLsb[i]);
+                mostSigBits[slot] = oldMsb[i];
+                leastSigBits[slot] = oldLsb[i];
+                statuses[slot] = oldStatuses[i];
+                timestamps[slot] = oldTimestamps[i];
+                transactionIdOffsets[slot] = oldOffsets[i];
+            }
+        }
+        logger.info("Payment status index grown to {} slots for {} entries", mostSigBits.length, size);
+    }
+
+    private void allocate(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        statuses = new byte[capacity];
+        timestamps = new long[capacity];
+        transactionIdOffsets = new int[capacity];
+    }
+
+    private boolean sameTransactionId(int offset, String transactionId) {
+        if (offset == NO_TRANSACTION_ID || transactionId == null) {
+            return offset == NO_TRANSACTION_ID && transactionId == null;
+        }
+        byte[] bytes = transactionId.getBytes(StandardCharsets.UTF_8);
+        int length = readLength(offset);
+        return length == bytes.length
+            && Arrays.equals(arena, offset + 2, offset + 2 + length, bytes, 0, length);
+    }
+
+    private int appendTransactionId(String transactionId) {
+        if (transactionId == null) {
+            return NO_TRANSACTION_ID;
+        }
+        byte[] bytes = transactionId.getBytes(StandardCharsets.UTF_8);
+        return appendTransactionId(bytes, Math.min(bytes.length, 0xffff));
+    }
+
+    private int appendTransactionId(byte[] bytes, int length) {
+        if (arenaSize + 2 + length > arena.length) {
+            long grown = Math.max((long) arena.length * 2, (long) arenaSize + 2 + length);
+            if (grown > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Payment status index transactionId arena is full");
+            }
+            arena = Arrays.copyOf(arena, (int) grown);
+        }
+        int offset = arenaSize;
+        arena[offset] = (byte) (length >>> 8);
+        arena[offset + 1] = (byte) length;
+        System.arraycopy(bytes, 0, arena, offset + 2, length);
+        arenaSize += 2 + length;
+        return offset;
+    }
+
+    private String readTransactionId(int offset) {
+        if (offset == NO_TRANSACTION_ID) {
+            return null;
+        }
+        return new String(arena, offset + 2, readLength(offset), StandardCharsets.UTF_8);
+    }
+
+    private int readLength(int offset) {
+        return readLength(arena, offset);
+    }
+
+    private static int readLength(byte[] arena, int offset) {
+        return ((arena[offset] & 0xff) << 8) | (arena[offset + 1] & 0xff);
+    }
+
+    private static int hash(long msb, long lsb) {
+        long hash = (msb ^ (lsb * 0x9e3779b97f4a7c15L)) * 0xbf58476d1ce4e5b9L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static int tableSizeFor(int expectedEntries) {
+        long slots = (long) Math.ceil(Math.max(16, expectedEntries) / MAX_LOAD);
+        return (int) Math.min(MAX_CAPACITY, Long.highestOneBit(slots - 1) << 1);
+    }
+}
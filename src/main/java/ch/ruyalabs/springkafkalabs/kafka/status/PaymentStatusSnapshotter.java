@@ -0,0 +1,121 @@
+package ch.ruyalabs.springkafkalabs.kafka.status;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes the {@link PaymentStatusIndex} with its partition offsets to a memory-mapped snapshot file, and
+ * restores it on startup, before the listener containers start.
+ * <p>
+ * Without a snapshot the index only learns about responses consumed after startup. With one, the consumer seeks every
+ * partition to the offset stored in the snapshot and replays just the records since the last snapshot, instead of the
+ * whole topic. Those records are processed again (at least once).
+ * <p>
+ * The snapshot is written to a temporary file next to the target and moved over it once complete, so a crash while
+ * writing leaves the previous snapshot intact. A final snapshot is written on shutdown, after the listener containers
+ * have stopped.
+ */
+@Component
+public class PaymentStatusSnapshotter implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentStatusSnapshotter.class);
+
+    private final PaymentStatusIndex statusIndex;
+    private final boolean enabled;
+    private final Path path;
+    private final ScheduledExecutorService scheduler;
+
+    public PaymentStatusSnapshotter(PaymentStatusIndex statusIndex,
+                                    @Value("${payment.kafka.status-index.snapshot.enabled:false}") boolean enabled,
+                                    @Value("${payment.kafka.status-index.snapshot.path:data/payment-status-index.snapshot}") Path path,
+                                    @Value("${payment.kafka.status-index.snapshot.interval:60s}") Duration interval) {
+        this.statusIndex = statusIndex;
+        this.enabled = enabled;
+        this.path = path.toAbsolutePath();
+
+        if (!enabled) {
+            this.scheduler = null;
+            return;
+        }
+        restore();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-status-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the current state of the index to the snapshot file
+     */
+    public void snapshot() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(path.getParent());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long bytes;
+        try (MappedSnapshotWriter out = new MappedSnapshotWriter(temporary)) {
+            statusIndex.writeSnapshot(out);
+            bytes = out.position();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logger.info("Payment status snapshot of {} entries ({} bytes) written to {} in {} ms",
+            statusIndex.size(), bytes, path, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Load the snapshot file into the index, if there is one
+     */
+    public void restore() {
+        if (!Files.isRegularFile(path)) {
+            logger.info("No payment status snapshot at {}, starting with an empty index", path);
+            return;
+        }
+        long start = System.nanoTime();
+        try (MappedSnapshotReader in = new MappedSnapshotReader(path)) {
+            statusIndex.restoreSnapshot(in);
+            logger.info("Payment status snapshot of {} entries restored from {} in {} ms",
+                statusIndex.size(), path, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            // The consumer then starts from the committed offsets, as without a snapshot
+            logger.error("Failed to restore payment status snapshot from {}, starting with an empty index", path, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (!enabled) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            // A scheduled snapshot may still be writing the temporary file
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotQuietly();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to write payment status snapshot to {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ch.ruyalabs.springkafkalabs.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, topics = {"payment-responses"})
+@DirtiesContext
+@TestPropertySource(properties = {
+    "payment.kafka.consumer.mode=batch"
+})
+public class KafkaConsumerConfigTest {
+
+    @Autowired
+    private ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory;
+
+    @Autowired
+    private ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory;
+
+    @Test
+    public void testRecordListenerFactoryCommitsPerRecord() {
+        assertNotEquals(Boolean.TRUE, kafkaListenerContainerFactory.isBatchListener());
+        assertEquals(ContainerProperties.AckMode.RECORD,
+            kafkaListenerContainerFactory.getContainerProperties().getAckMode());
+    }
+
+    @Test
+    public void testBatchListenerFactoryCommitsPerBatch() {
+        assertEquals(Boolean.TRUE, batchKafkaListenerContainerFactory.isBatchListener());
+        assertEquals(ContainerProperties.AckMode.BATCH,
+            batchKafkaListenerContainerFactory.getContainerProperties().getAckMode());
+    }
+}
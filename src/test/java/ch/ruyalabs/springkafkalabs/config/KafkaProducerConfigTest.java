@@ -0,0 +1,64 @@
+package ch.ruyalabs.springkafkalabs.config;
+
+import io.cloudevents.CloudEvent;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, topics = {"payment-requests"})
+@DirtiesContext
+@TestPropertySource(properties = {
+    "payment.kafka.producer.profile=bulk-backfill"
+})
+public class KafkaProducerConfigTest {
+
+    @Autowired
+    private ProducerFactory<String, CloudEvent> producerFactory;
+
+    @Autowired
+    private KafkaTemplate<String, Object> retryKafkaTemplate;
+
+    @Autowired
+    private ProducerProfileProperties producerProfiles;
+
+    @Test
+    public void testProfileIsAppliedPerTemplate() {
+        Map<String, Object> requestConfig = producerFactory.getConfigurationProperties();
+        assertEquals(50, requestConfig.get(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("zstd", requestConfig.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        assertEquals("all", requestConfig.get(ProducerConfig.ACKS_CONFIG));
+        assertEquals(true, requestConfig.get(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG));
+
+        Map<String, Object> retryConfig = retryKafkaTemplate.getProducerFactory().getConfigurationProperties();
+        assertEquals(10, retryConfig.get(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("lz4", retryConfig.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+    }
+
+    @Test
+    public void testAllConfiguredProfilesStayIdempotent() {
+        assertEquals(3, producerProfiles.profiles().size());
+        producerProfiles.profiles().keySet().forEach(name -> assertDoesNotThrow(() ->
+            producerProfiles.producerConfig(name)));
+    }
+
+    @Test
+    public void testInvalidProfilesAreRejected() {
+        ProducerProfileProperties properties = new ProducerProfileProperties("fast", null, Map.of(
+            "fast", new ProducerProfileProperties.Profile(0, 16384, "none", 33554432L, 10)));
+
+        assertThrows(IllegalStateException.class, () -> properties.producerConfig("fast"));
+        assertThrows(IllegalStateException.class, () -> properties.producerConfig("unknown"));
+        assertTrue(properties.producerConfig("").isEmpty());
+    }
+}
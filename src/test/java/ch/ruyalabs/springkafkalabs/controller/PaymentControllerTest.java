@@ -1,19 +1,51 @@
 package ch.ruyalabs.springkafkalabs.controller;
 
+import ch.ruyalabs.springkafkalabs.kafka.correlation.CorrelationStoreFullException;
+import ch.ruyalabs.springkafkalabs.kafka.correlation.DuplicateCorrelationException;
+import ch.ruyalabs.springkafkalabs.kafka.producer.InFlightLimiter;
 import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentRequestProducer;
+import ch.ruyalabs.springkafkalabs.kafka.producer.ProducerSaturatedException;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusEntry;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusIndex;
+import ch.ruyalabs.types.PaymentDisbursementRequest;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import io.cloudevents.CloudEvent;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(PaymentController.class)
+@Import(RequestDiagnostics.class)
 public class PaymentControllerTest {
 
     @Autowired
@@ -22,6 +54,9 @@ public class PaymentControllerTest {
     @MockitoBean
     private PaymentRequestProducer paymentRequestProducer;
 
+    @MockitoBean
+    private PaymentStatusIndex paymentStatusIndex;
+
     @Test
     public void testTriggerPaymentRequest() throws Exception {
         // Given
@@ -32,4 +67,247 @@ public class PaymentControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string(org.hamcrest.Matchers.containsString("Payment request sent successfully with disbursementId:")));
     }
+
+    @Test
+    public void testTriggerAnswersTooManyRequestsWhenSaturated() throws Exception {
+        // Given
+        doThrow(new ProducerSaturatedException(10, InFlightLimiter.Policy.FAIL_FAST, Duration.ofMillis(1500)))
+                .when(paymentRequestProducer).sendPaymentRequest(any());
+
+        // When & Then
+        mockMvc.perform(post("/api/payment/trigger"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    @Test
+    public void testAsyncTriggerAnswersServiceUnavailableWhenWaitTimesOut() throws Exception {
+        // Given
+        when(paymentRequestProducer.sendPaymentRequestAsync(any()))
+                .thenThrow(new ProducerSaturatedException(10, InFlightLimiter.Policy.WAIT, Duration.ofSeconds(1)));
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/payment/trigger/async"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.acknowledged").value(false));
+    }
+
+    @Test
+    public void testAwaitedTriggerAnswersWithPaymentOutcome() throws Exception {
+        // Given
+        when(paymentRequestProducer.sendPaymentRequestAndAwaitResponse(any())).thenAnswer(invocation -> {
+            PaymentDisbursementRequest request = invocation.getArgument(0);
+            PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+            response.setDisbursementId(request.getDisbursementId());
+            response.setStatus(PaymentDisbursementResponse.Status.PROCESSED);
+            response.setTransactionId("txn_1234567890");
+            return CompletableFuture.completedFuture(response);
+        });
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/payment/trigger").param("await", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("processed"))
+                .andExpect(jsonPath("$.transactionId").value("txn_1234567890"))
+                .andExpect(jsonPath("$.disbursementId").isNotEmpty());
+    }
+
+    @Test
+    public void testAwaitedTriggerAnswersGatewayTimeoutWithoutResponse() throws Exception {
+        // Given
+        when(paymentRequestProducer.sendPaymentRequestAndAwaitResponse(any()))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("No payment response")));
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/payment/trigger").param("await", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(jsonPath("$.error").value("No payment response"));
+    }
+
+    @Test
+    public void testAwaitedTriggerAnswersServiceUnavailableWhenStoreIsFull() throws Exception {
+        // Given
+        when(paymentRequestProducer.sendPaymentRequestAndAwaitResponse(any()))
+                .thenThrow(new CorrelationStoreFullException(10));
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/payment/trigger").param("await", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void testAwaitedTriggerAnswersConflictForDuplicateId() throws Exception {
+        // Given
+        when(paymentRequestProducer.sendPaymentRequestAndAwaitResponse(any()))
+                .thenThrow(new DuplicateCorrelationException(UUID.randomUUID()));
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/payment/trigger").param("await", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testAwaitedTriggerAnswersInternalServerErrorForOtherFailures() throws Exception {
+        // Given - An unrelated bug is not reported as a temporary condition
+        when(paymentRequestProducer.sendPaymentRequestAndAwaitResponse(any()))
+                .thenThrow(new IllegalStateException("Unexpected state"));
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/payment/trigger").param("await", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    public void testAsyncTriggerAnswersWithPartitionAndOffset() throws Exception {
+        // Given
+        when(paymentRequestProducer.sendPaymentRequestAsync(any())).thenReturn(acknowledged(42L));
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/payment/trigger/async"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.acknowledged").value(true))
+                .andExpect(jsonPath("$.topic").value("payment-requests"))
+                .andExpect(jsonPath("$.partition").value(0))
+                .andExpect(jsonPath("$.offset").value(42))
+                .andExpect(jsonPath("$.disbursementId").isNotEmpty());
+    }
+
+    @Test
+    public void testAsyncTriggerReportsFailedSend() throws Exception {
+        // Given
+        when(paymentRequestProducer.sendPaymentRequestAsync(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Broker unavailable")));
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/payment/trigger/async"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.acknowledged").value(false))
+                .andExpect(jsonPath("$.error").value("Broker unavailable"));
+    }
+
+    @Test
+    public void testPaymentStatusLookup() throws Exception {
+        // Given
+        UUID disbursementId = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        when(paymentStatusIndex.get(disbursementId)).thenReturn(new PaymentStatusEntry(disbursementId,
+                PaymentDisbursementResponse.Status.FAILED, null, Instant.parse("2025-01-01T00:00:00Z")));
+
+        // When & Then
+        mockMvc.perform(get("/api/payment/" + disbursementId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("failed"))
+                .andExpect(jsonPath("$.updatedAt").value("2025-01-01T00:00:00Z"))
+                .andExpect(jsonPath("$.transactionId").doesNotExist());
+    }
+
+    @Test
+    public void testPaymentStatusLookupOfUnknownDisbursement() throws Exception {
+        mockMvc.perform(get("/api/payment/" + UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/payment/not-a-uuid"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testBulkSubmissionFromNdjson() throws Exception {
+        // Given - Three requests, one per line, the broker acknowledges each with the next offset
+        AtomicLong offset = new AtomicLong();
+        when(paymentRequestProducer.sendPaymentRequestAsyncWhenFree(any()))
+                .thenAnswer(invocation -> acknowledged(offset.getAndIncrement()));
+
+        String body = bulkItem("11111111-1111-1111-1111-111111111111") + "\n"
+                + bulkItem("22222222-2222-2222-2222-222222222222") + "\n"
+                + bulkItem("33333333-3333-3333-3333-333333333333") + "\n";
+
+        // When & Then
+        mockMvc.perform(post("/api/payment/bulk").contentType("application/x-ndjson").content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.succeeded").value(3))
+                .andExpect(jsonPath("$.failed").value(0))
+                .andExpect(jsonPath("$.items[2].disbursementId").value("33333333-3333-3333-3333-333333333333"))
+                .andExpect(jsonPath("$.items[2].offset").value(2));
+    }
+
+    @Test
+    public void testBulkSubmissionFromJsonArrayReportsFailedItems() throws Exception {
+        // Given - The second send is rejected by the broker, the third request has no disbursementId
+        when(paymentRequestProducer.sendPaymentRequestAsyncWhenFree(any())).thenAnswer(invocation -> acknowledged(0L));
+        when(paymentRequestProducer.sendPaymentRequestAsyncWhenFree(argThat(request -> request != null
+                && "22222222-2222-2222-2222-222222222222".equals(String.valueOf(request.getDisbursementId())))))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Broker unavailable")));
+
+        String body = "[" + bulkItem("11111111-1111-1111-1111-111111111111") + ","
+                + bulkItem("22222222-2222-2222-2222-222222222222") + ","
+                + "{\"paymentMethod\": \"bank_transfer\"}]";
+
+        // When & Then
+        mockMvc.perform(post("/api/payment/bulk").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.items[1].sent").value(false))
+                .andExpect(jsonPath("$.items[1].error").value("Broker unavailable"))
+                .andExpect(jsonPath("$.items[2].error").value("Missing disbursementId"));
+    }
+
+    @Test
+    public void testBulkSubmissionRejectsInvalidBody() throws Exception {
+        mockMvc.perform(post("/api/payment/bulk").contentType(MediaType.APPLICATION_JSON).content("not json"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private CompletableFuture<SendResult<String, CloudEvent>> acknowledged(long offset) {
+        RecordMetadata metadata = new RecordMetadata(new TopicPartition("payment-requests", 0), offset, 0, 0L, 0, 0);
+        return CompletableFuture.completedFuture(
+                new SendResult<>(new ProducerRecord<>("payment-requests", (CloudEvent) null), metadata));
+    }
+
+    private String bulkItem(String disbursementId) {
+        return "{\"disbursementId\": \"" + disbursementId + "\", "
+                + "\"recipient\": {\"name\": \"Jane Doe\", \"email\": \"jane.doe@example.com\"}, "
+                + "\"amount\": {\"value\": 100.0, \"currency\": \"CHF\"}, "
+                + "\"paymentMethod\": \"bank_transfer\"}";
+    }
 }
@@ -0,0 +1,88 @@
+package ch.ruyalabs.springkafkalabs.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestDiagnosticsTest {
+
+    @Test
+    public void testSampleHeaderSamplesRegardlessOfRate() {
+        RequestDiagnostics diagnostics = diagnostics(0, "X-Debug=true", List.of());
+
+        assertNull(diagnostics.sampledBy(request()));
+        MockHttpServletRequest otherValue = request();
+        otherValue.addHeader("X-Debug", "false");
+        assertNull(diagnostics.sampledBy(otherValue));
+
+        MockHttpServletRequest debug = request();
+        debug.addHeader("x-debug", "TRUE");
+        assertEquals("header", diagnostics.sampledBy(debug));
+    }
+
+    @Test
+    public void testSampleRate() {
+        assertEquals("rate", diagnostics(1, "", List.of()).sampledBy(request()));
+        assertNull(diagnostics(0, "", List.of()).sampledBy(request()));
+
+        RequestDiagnostics oneInTen = diagnostics(10, "", List.of());
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (oneInTen.sampledBy(request()) != null) {
+                sampled++;
+            }
+        }
+        System.out.println("[DEBUG_LOG] Sampled 1 in 10: " + sampled + " of 10000");
+        assertTrue(sampled > 800 && sampled < 1200, "sampled " + sampled);
+    }
+
+    @Test
+    public void testDisabledSamplesNothing() {
+        RequestDiagnostics diagnostics = new RequestDiagnostics(false, 1, "X-Debug", List.of(), List.of(), List.of());
+        MockHttpServletRequest debug = request();
+        debug.addHeader("X-Debug", "true");
+
+        assertNull(diagnostics.sampledBy(debug));
+    }
+
+    @Test
+    public void testHeadersAreDeniedAndRedacted() {
+        MockHttpServletRequest request = request();
+        request.addHeader("Authorization", "Bearer secret");
+        request.addHeader("Cookie", "session=secret");
+        request.addHeader("Accept", "application/json");
+        request.addHeader("Accept", "text/plain");
+
+        Map<String, String> headers = diagnostics(1, "", List.of()).headers(request);
+
+        assertEquals(Map.of(
+            "authorization", RequestDiagnostics.REDACTED,
+            "accept", "application/json, text/plain",
+            "user-agent", "test-client"), headers);
+    }
+
+    @Test
+    public void testAllowlistRestrictsHeaders() {
+        MockHttpServletRequest request = request();
+        request.addHeader("Accept", "application/json");
+
+        Map<String, String> headers = diagnostics(1, "", List.of("User-Agent")).headers(request);
+
+        assertEquals(Map.of("user-agent", "test-client"), headers);
+    }
+
+    private static RequestDiagnostics diagnostics(int sampleRate, String sampleHeader, List<String> allowedHeaders) {
+        return new RequestDiagnostics(true, sampleRate, sampleHeader, allowedHeaders,
+            List.of("cookie", "set-cookie"), List.of("authorization", "proxy-authorization", "x-api-key"));
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/payment/trigger");
+        request.addHeader("User-Agent", "test-client");
+        return request;
+    }
+}
@@ -0,0 +1,76 @@
+package ch.ruyalabs.springkafkalabs.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentRecordingAnalyzerTest {
+
+    @Name("ch.ruyalabs.payment.Test")
+    static class TestEvent extends Event {
+
+        @Label("Decode")
+        @Timespan
+        long decodeTime;
+
+        @Label("Skipped")
+        @Timespan
+        long skippedTime;
+    }
+
+    @Name("other.Test")
+    static class OtherEvent extends Event {
+    }
+
+    @Test
+    public void testPercentilesPerStage(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("payment.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(TestEvent.class).withoutThreshold();
+            recording.enable(OtherEvent.class);
+            recording.start();
+            for (int i = 1; i <= 100; i++) {
+                TestEvent event = new TestEvent();
+                event.decodeTime = i * 1_000L;
+                event.commit();
+            }
+            new OtherEvent().commit();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        PaymentRecordingAnalyzer.Report report = PaymentRecordingAnalyzer.analyze(file, 3);
+
+        Map<String, PaymentRecordingAnalyzer.StageLatency> stages = report.stages().stream()
+            .collect(Collectors.toMap(PaymentRecordingAnalyzer.StageLatency::stage, Function.identity()));
+        // Stages that were never reached are left out, other events are ignored
+        assertEquals(2, stages.size());
+        PaymentRecordingAnalyzer.StageLatency decode = stages.get("Decode");
+        assertEquals(100, decode.count());
+        assertEquals(Duration.ofNanos(50_000), decode.p50());
+        assertEquals(Duration.ofNanos(99_000), decode.p99());
+        assertEquals(Duration.ofNanos(100_000), decode.max());
+        assertEquals(100, stages.get("total").count());
+        assertEquals(3, report.slowest().size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PaymentRecordingAnalyzer.print(report, new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.out.println("[DEBUG_LOG] " + out.toString(StandardCharsets.UTF_8));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("ch.ruyalabs.payment.Test"));
+    }
+}
@@ -0,0 +1,176 @@
+package ch.ruyalabs.springkafkalabs.kafka;
+
+import ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseConsumer;
+import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentRequestProducer;
+import ch.ruyalabs.types.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.message.Encoding;
+import io.cloudevents.kafka.CloudEventSerializer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, topics = {"payment-requests", "payment-responses"})
+@DirtiesContext
+@TestPropertySource(properties = {
+    "payment.kafka.producer.encoding=binary"
+})
+public class BinaryEncodingTest {
+
+    @Autowired
+    private PaymentRequestProducer paymentRequestProducer;
+
+    @Autowired
+    private PaymentResponseConsumer paymentResponseConsumer;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testBinaryEncodingPutsAttributesIntoHeaders() throws Exception {
+        // Given
+        PaymentDisbursementRequest request = createSamplePaymentRequest();
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("binary-encoding-test", "false", embeddedKafkaBroker);
+
+        try (Consumer<String, byte[]> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+                new StringDeserializer(), new ByteArrayDeserializer()).createConsumer()) {
+            embeddedKafkaBroker.consumeFromAnEmbeddedTopic(consumer, "payment-requests");
+
+            // When
+            paymentRequestProducer.sendPaymentRequest(request);
+
+            // Then - The attributes are headers and the value is just the data
+            ConsumerRecord<String, byte[]> record = KafkaTestUtils.getSingleRecord(consumer, "payment-requests");
+            assertEquals("1.0", new String(record.headers().lastHeader("ce_specversion").value()));
+            assertEquals("payment-service", new String(record.headers().lastHeader("ce_source").value()));
+            assertEquals("com.ruyalabs.payment.disbursement.request", new String(record.headers().lastHeader("ce_type").value()));
+            assertEquals("application/json", new String(record.headers().lastHeader("content-type").value()));
+
+            PaymentDisbursementRequest sent = objectMapper.readValue(record.value(), PaymentDisbursementRequest.class);
+            assertEquals(request.getDisbursementId(), sent.getDisbursementId());
+        }
+    }
+
+    @Test
+    public void testBinaryPayloadIsSmallerThanStructured() throws Exception {
+        // Given
+        CloudEvent cloudEvent = createSampleResponseEvent("payment-service");
+
+        // When
+        byte[] structured = serialize(cloudEvent, Encoding.STRUCTURED, new RecordHeaders());
+        byte[] binary = serialize(cloudEvent, Encoding.BINARY, new RecordHeaders());
+
+        // Then
+        assertTrue(binary.length < structured.length);
+        System.out.println("[DEBUG_LOG] Structured value: " + structured.length + " bytes, binary value: " + binary.length + " bytes");
+    }
+
+    @Test
+    public void testConsumerAcceptsBinaryMode() throws Exception {
+        // Given - A binary mode CloudEvent as it arrives from the broker
+        RecordHeaders headers = new RecordHeaders();
+        byte[] value = serialize(createSampleResponseEvent("payment-2-service"), Encoding.BINARY, headers);
+
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(
+            "payment-responses", 0, 0L, "test-key", value);
+        headers.forEach(header -> record.headers().add(header));
+
+        // When & Then - Should process successfully
+        assertDoesNotThrow(() -> {
+            paymentResponseConsumer.handlePaymentResponseBytes(record);
+        });
+    }
+
+    @Test
+    public void testConsumerRejectsBinaryModeWithInvalidAttributes() throws Exception {
+        // Given - A binary mode CloudEvent from a source that is not allowed
+        RecordHeaders headers = new RecordHeaders();
+        byte[] value = serialize(createSampleResponseEvent("unauthorized-service"), Encoding.BINARY, headers);
+
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(
+            "payment-responses", 0, 0L, "test-key", new String(value));
+        headers.forEach(header -> record.headers().add(header));
+
+        // When & Then - Should handle gracefully (log validation error and return)
+        assertDoesNotThrow(() -> {
+            paymentResponseConsumer.handlePaymentResponse(record);
+        });
+    }
+
+    private byte[] serialize(CloudEvent cloudEvent, Encoding encoding, RecordHeaders headers) {
+        try (CloudEventSerializer serializer = new CloudEventSerializer()) {
+            serializer.configure(Map.of(CloudEventSerializer.ENCODING_CONFIG, encoding,
+                CloudEventSerializer.EVENT_FORMAT_CONFIG, "application/cloudevents+json"), false);
+            return serializer.serialize("payment-responses", headers, cloudEvent);
+        }
+    }
+
+    private CloudEvent createSampleResponseEvent(String source) throws Exception {
+        PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+        response.setDisbursementId(UUID.fromString("a1b2c3d4-e5f6-7890-1234-567890abcdef"));
+        response.setStatus(PaymentDisbursementResponse.Status.PROCESSED);
+        response.setProcessedAt(new Date());
+        response.setTransactionId("txn_1234567890");
+
+        return CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create(source))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withTime(OffsetDateTime.now())
+                .withData(objectMapper.writeValueAsBytes(response))
+                .build();
+    }
+
+    private PaymentDisbursementRequest createSamplePaymentRequest() {
+        PaymentDisbursementRequest request = new PaymentDisbursementRequest();
+
+        request.setDisbursementId(UUID.randomUUID());
+
+        PaymentRecipient recipient = new PaymentRecipient();
+        recipient.setName("Jane Doe");
+        recipient.setEmail("jane.doe@example.com");
+
+        BankAccountDetails bankDetails = new BankAccountDetails();
+        bankDetails.setAccountNumber("1234567890");
+        bankDetails.setSortCode("11-22-33");
+        bankDetails.setIban("GB29NWBK60161331926819");
+        recipient.setBankDetails(bankDetails);
+
+        request.setRecipient(recipient);
+
+        PaymentAmount amount = new PaymentAmount();
+        amount.setValue(1500.75);
+        amount.setCurrency("USD");
+        request.setAmount(amount);
+
+        request.setPaymentMethod(PaymentDisbursementRequest.PaymentMethod.BANK_TRANSFER);
+        request.setRequestedAt(new Date());
+
+        return request;
+    }
+}
@@ -115,4 +115,36 @@ public class DeserializerErrorHandlingTest {
             paymentResponseConsumer.handlePaymentResponse(record);
         });
     }
+
+    @Test
+    public void testByteConsumerHandlesNullAndBlankPayloadGracefully() {
+        // Given - What ErrorHandlingDeserializer hands over for a failed value, and a whitespace-only payload
+        ConsumerRecord<String, byte[]> nullRecord = new ConsumerRecord<>(
+            "payment-responses", 0, 0L, "malformed-key", null);
+        nullRecord.headers().add("spring.deserializer.value.exception.message",
+            "Unexpected character at position 15".getBytes());
+
+        ConsumerRecord<String, byte[]> blankRecord = new ConsumerRecord<>(
+            "payment-responses", 0, 1L, "blank-key", " \r\n\t ".getBytes());
+        blankRecord.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+
+        // When & Then - Should handle gracefully, like the String based listener
+        assertDoesNotThrow(() -> {
+            paymentResponseConsumer.handlePaymentResponseBytes(nullRecord);
+            paymentResponseConsumer.handlePaymentResponseBytes(blankRecord);
+        });
+    }
+
+    @Test
+    public void testByteConsumerHandlesMalformedJson() {
+        // Given
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(
+            "payment-responses", 0, 0L, "malformed-key", "invalid json {".getBytes());
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+
+        // When & Then
+        assertDoesNotThrow(() -> {
+            paymentResponseConsumer.handlePaymentResponseBytes(record);
+        });
+    }
 }
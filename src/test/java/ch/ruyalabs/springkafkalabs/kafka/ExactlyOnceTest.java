@@ -0,0 +1,296 @@
+package ch.ruyalabs.springkafkalabs.kafka;
+
+import ch.ruyalabs.springkafkalabs.config.KafkaConsumerConfig;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.FailedRecordAttempts;
+import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentOutcomeProducer;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.jackson.JsonFormat;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, topics = {"payment-requests", "payment-responses", "payment-outcomes"})
+@DirtiesContext
+@TestPropertySource(properties = {
+    "payment.kafka.consumer.mode=batch",
+    "payment.kafka.consumer.transactions.enabled=true",
+    "payment.kafka.topics.outcome=payment-outcomes"
+})
+public class ExactlyOnceTest {
+
+    @Autowired
+    @Qualifier("retryKafkaTemplate")
+    private KafkaTemplate<String, Object> retryKafkaTemplate;
+
+    @Autowired
+    private ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory;
+
+    @Autowired
+    @Qualifier("outcomeProducerFactory")
+    private ProducerFactory<String, CloudEvent> outcomeProducerFactory;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Autowired
+    private FailedRecordAttempts failedRecordAttempts;
+
+    @MockitoSpyBean
+    private PaymentOutcomeProducer outcomeProducer;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testBatchContainerIsTransactional() {
+        assertTrue(outcomeProducerFactory.transactionCapable());
+        assertInstanceOf(KafkaTransactionManager.class,
+            batchKafkaListenerContainerFactory.getContainerProperties().getKafkaAwareTransactionManager());
+        assertEquals("read_committed", batchKafkaListenerContainerFactory.getContainerProperties()
+            .getKafkaConsumerProperties().get(ConsumerConfig.ISOLATION_LEVEL_CONFIG));
+    }
+
+    @Test
+    public void testOutcomeIsCommittedWithTheResponseOffset() throws Exception {
+        // Given - KafkaAdmin grows the response topic to 3 partitions, so the partition is fixed
+        UUID disbursementId = UUID.randomUUID();
+        ProducerRecord<String, Object> record = new ProducerRecord<>("payment-responses", 0,
+            disbursementId.toString(), cloudEventJson(disbursementId));
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+
+        try (Consumer<String, String> consumer = outcomeConsumer()) {
+            // When
+            retryKafkaTemplate.send(record).get();
+
+            // Then - The outcome is visible to a read_committed consumer, so its transaction committed, and the
+            // offset of the response was committed by the same transaction
+            ConsumerRecord<String, String> outcome = awaitOutcome(consumer, disbursementId.toString());
+            assertTrue(outcome.value().contains("com.ruyalabs.payment.disbursement.outcome"));
+            assertTrue(outcome.value().contains(disbursementId.toString()));
+            assertEquals(1L, awaitCommittedOffset(0, 1L));
+            System.out.println("[DEBUG_LOG] Outcome at offset " + outcome.offset() + ": " + outcome.value());
+        }
+    }
+
+    @Test
+    public void testResponseRedeliveredAfterRollbackIsNotSkippedAsDuplicate() throws Exception {
+        // Given - The first outcome send of the response fails, so its transaction rolls back after processing
+        UUID disbursementId = UUID.randomUUID();
+        AtomicInteger sends = new AtomicInteger();
+        doAnswer(invocation -> sends.getAndIncrement() == 0
+                ? CompletableFuture.failedFuture(new IllegalStateException("Outcome topic unavailable"))
+                : invocation.callRealMethod())
+            .when(outcomeProducer).send(any(), argThat(response -> response != null
+                && disbursementId.equals(response.getDisbursementId())));
+        ProducerRecord<String, Object> record = new ProducerRecord<>("payment-responses", 1,
+            disbursementId.toString(), cloudEventJson(disbursementId));
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+
+        try (Consumer<String, String> consumer = outcomeConsumer()) {
+            // When
+            retryKafkaTemplate.send(record).get();
+
+            // Then - The redelivered response is processed again instead of being dropped as a duplicate of the
+            // rolled back attempt
+            ConsumerRecord<String, String> outcome = awaitOutcome(consumer, disbursementId.toString());
+            assertTrue(outcome.value().contains(disbursementId.toString()));
+            assertEquals(2, sends.get());
+            System.out.println("[DEBUG_LOG] Outcome committed after " + sends.get() + " attempts");
+        }
+    }
+
+    @Test
+    public void testOnlyTheFailingRecordOfABatchIsDeadLettered() throws Exception {
+        // Given - The middle response of the batch has no status, so processing it fails on every attempt
+        UUID first = UUID.randomUUID();
+        UUID failing = UUID.randomUUID();
+        UUID last = UUID.randomUUID();
+
+        try (Consumer<String, String> consumer = outcomeConsumer();
+             Consumer<String, String> dltConsumer = dltConsumer()) {
+            // When
+            retryKafkaTemplate.send(responseRecord(2, first, PaymentDisbursementResponse.Status.PROCESSED));
+            retryKafkaTemplate.send(responseRecord(2, failing, null));
+            retryKafkaTemplate.send(responseRecord(2, last, PaymentDisbursementResponse.Status.FAILED)).get();
+
+            // Then - Once its attempts are used up the failing response goes to the DLT, and the other two
+            // responses commit with their outcomes and all three offsets
+            ConsumerRecord<String, String> dltRecord = awaitRecord(dltConsumer, Set.of(failing.toString()))
+                .get(failing.toString());
+            Header failureClass = dltRecord.headers().lastHeader(KafkaConsumerConfig.FAILURE_CLASS_HEADER);
+            assertEquals("transient", new String(failureClass.value(), StandardCharsets.UTF_8));
+
+            Map<String, ConsumerRecord<String, String>> outcomes =
+                awaitRecord(consumer, Set.of(first.toString(), last.toString()));
+            assertTrue(outcomes.get(first.toString()).value().contains("\"status\":\"processed\""));
+            assertTrue(outcomes.get(last.toString()).value().contains("\"status\":\"failed\""));
+            assertEquals(3L, awaitCommittedOffset(2, 3L));
+            assertEquals(0, failedRecordAttempts.getTrackedRecords());
+            System.out.println("[DEBUG_LOG] DLT record of " + failing + " at offset " + dltRecord.offset()
+                + ", outcomes: " + outcomes.keySet());
+        }
+    }
+
+    @Test
+    public void testAbortedPollsLeaveNothingInTheDlt() throws Exception {
+        // Given - A poison pill in the same poll as a response that fails on every attempt, so the poll is rolled
+        // back until the failing response has used up its attempts
+        UUID poisonPill = UUID.randomUUID();
+        UUID failing = UUID.randomUUID();
+        ProducerRecord<String, Object> poisonPillRecord = new ProducerRecord<>("payment-responses", 1,
+            poisonPill.toString(), "not a cloud event");
+        poisonPillRecord.headers().add("content-type",
+            "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+
+        try (Consumer<String, String> dltConsumer = dltConsumer()) {
+            // When
+            retryKafkaTemplate.send(poisonPillRecord);
+            retryKafkaTemplate.send(responseRecord(1, failing, null)).get();
+
+            // Then - Both are dead-lettered once, by the transaction that committed; the ones published by the
+            // aborted transactions are not visible to a read_committed consumer
+            Map<String, Integer> dltRecords = new HashMap<>();
+            long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            long settled = Long.MAX_VALUE;
+            while (System.nanoTime() < Math.min(deadline, settled)) {
+                for (ConsumerRecord<String, String> record : dltConsumer.poll(Duration.ofMillis(200))) {
+                    dltRecords.merge(record.key(), 1, Integer::sum);
+                }
+                if (settled == Long.MAX_VALUE && dltRecords.containsKey(failing.toString())) {
+                    // Keep reading a little longer for duplicates
+                    settled = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+                }
+            }
+            assertEquals(1, dltRecords.get(poisonPill.toString()));
+            assertEquals(1, dltRecords.get(failing.toString()));
+            assertEquals(0, failedRecordAttempts.getTrackedRecords());
+            System.out.println("[DEBUG_LOG] DLT records per key: " + dltRecords);
+        }
+    }
+
+    private ProducerRecord<String, Object> responseRecord(int partition, UUID disbursementId,
+                                                          PaymentDisbursementResponse.Status status) throws Exception {
+        ProducerRecord<String, Object> record = new ProducerRecord<>("payment-responses", partition,
+            disbursementId.toString(), cloudEventJson(disbursementId, status));
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    private Consumer<String, String> dltConsumer() {
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("exactly-once-test-dlt", "false",
+            embeddedKafkaBroker);
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+            new StringDeserializer(), new StringDeserializer()).createConsumer();
+        consumer.subscribe(List.of("payment-responses-dlt"));
+        return consumer;
+    }
+
+    private Consumer<String, String> outcomeConsumer() {
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("exactly-once-test", "false",
+            embeddedKafkaBroker);
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+            new StringDeserializer(), new StringDeserializer()).createConsumer();
+        consumer.subscribe(List.of("payment-outcomes"));
+        return consumer;
+    }
+
+    private static ConsumerRecord<String, String> awaitOutcome(Consumer<String, String> consumer, String key) {
+        return awaitRecord(consumer, Set.of(key)).get(key);
+    }
+
+    private static Map<String, ConsumerRecord<String, String>> awaitRecord(Consumer<String, String> consumer,
+                                                                           Set<String> keys) {
+        Map<String, ConsumerRecord<String, String>> found = new HashMap<>();
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (System.nanoTime() < deadline) {
+            for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(200))) {
+                if (keys.contains(record.key())) {
+                    found.put(record.key(), record);
+                }
+            }
+            if (found.size() == keys.size()) {
+                return found;
+            }
+        }
+        return fail("No record with keys " + keys + ", found " + found.keySet());
+    }
+
+    /**
+     * The group coordinator applies the offsets of a transaction shortly after its outcomes become visible
+     */
+    private long awaitCommittedOffset(int partition, long expected) throws Exception {
+        OffsetAndMetadata committed = null;
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            committed = KafkaTestUtils.getCurrentOffset(embeddedKafkaBroker.getBrokersAsString(),
+                "payment-service", "payment-responses", partition);
+            if (committed != null && committed.offset() == expected) {
+                return committed.offset();
+            }
+            Thread.sleep(100);
+        }
+        return fail("Committed offset for payment-responses-" + partition + ": " + committed);
+    }
+
+    private String cloudEventJson(UUID disbursementId) throws Exception {
+        return cloudEventJson(disbursementId, PaymentDisbursementResponse.Status.PROCESSED);
+    }
+
+    private String cloudEventJson(UUID disbursementId, PaymentDisbursementResponse.Status status) throws Exception {
+        PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+        response.setDisbursementId(disbursementId);
+        response.setStatus(status);
+        response.setProcessedAt(new Date());
+        response.setTransactionId("txn_exactly_once");
+
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("payment-service"))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withData(objectMapper.writeValueAsBytes(response))
+                .build();
+        return new String(new JsonFormat().serialize(cloudEvent), StandardCharsets.UTF_8);
+    }
+}
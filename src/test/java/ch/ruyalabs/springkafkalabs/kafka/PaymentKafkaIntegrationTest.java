@@ -1,5 +1,6 @@
 package ch.ruyalabs.springkafkalabs.kafka;
 
+import ch.ruyalabs.springkafkalabs.jfr.PaymentRecordingAnalyzer;
 import ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseConsumer;
 import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentRequestProducer;
 import ch.ruyalabs.types.*;
@@ -8,18 +9,27 @@ import io.cloudevents.core.builder.CloudEventBuilder;
 import io.cloudevents.core.format.EventFormat;
 import io.cloudevents.jackson.JsonFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.kafka.test.context.EmbeddedKafka;
 import org.springframework.test.annotation.DirtiesContext;
 
 import java.net.URI;
+import java.nio.file.Path;
 import java.time.OffsetDateTime;
 import java.util.Date;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,6 +44,9 @@ public class PaymentKafkaIntegrationTest {
     @Autowired
     private PaymentResponseConsumer paymentResponseConsumer;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Test
@@ -79,6 +92,84 @@ public class PaymentKafkaIntegrationTest {
         });
     }
 
+    @Test
+    public void testAwaitedPaymentRequestIsCompletedByMatchingResponse() throws Exception {
+        // Given - A request waiting for its outcome
+        PaymentDisbursementRequest request = createSamplePaymentRequest();
+        request.setDisbursementId(UUID.randomUUID());
+        CompletableFuture<PaymentDisbursementResponse> outcome =
+            paymentRequestProducer.sendPaymentRequestAndAwaitResponse(request);
+
+        PaymentDisbursementResponse response = createSamplePaymentResponse();
+        response.setDisbursementId(request.getDisbursementId());
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("payment-service"))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withTime(OffsetDateTime.now())
+                .withData(objectMapper.writeValueAsBytes(response))
+                .build();
+        ConsumerRecord<String, String> consumerRecord = new ConsumerRecord<>("payment-responses", 0, 0L,
+            request.getDisbursementId().toString(), new String(new JsonFormat().serialize(cloudEvent)));
+        consumerRecord.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+
+        // When - The matching response is consumed
+        paymentResponseConsumer.handlePaymentResponse(consumerRecord);
+
+        // Then
+        PaymentDisbursementResponse awaited = outcome.get(10, TimeUnit.SECONDS);
+        assertEquals(PaymentDisbursementResponse.Status.PROCESSED, awaited.getStatus());
+        assertEquals("txn_1234567890", awaited.getTransactionId());
+    }
+
+    @Test
+    public void testFlightRecordingBreaksDownConsumerAndProducerStages(@TempDir Path tempDir) throws Exception {
+        // Given - A recording with the bundled payment settings
+        Path file = tempDir.resolve("payment.jfr");
+        try (Recording recording = new Recording(Configuration.create(Path.of("src/main/resources/jfr/payment.jfc")))) {
+            recording.start();
+
+            // When
+            paymentResponseConsumer.handlePaymentResponse(createResponseRecord("jfr-key"));
+            paymentRequestProducer.sendPaymentRequestAsync(createSamplePaymentRequest()).get(10, TimeUnit.SECONDS);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        // Then
+        PaymentRecordingAnalyzer.Report report = PaymentRecordingAnalyzer.analyze(file, 2);
+        Set<String> stages = report.stages().stream()
+            .map(stage -> stage.event() + "/" + stage.stage())
+            .collect(Collectors.toSet());
+        System.out.println("[DEBUG_LOG] Recorded stages: " + stages);
+        assertTrue(stages.containsAll(Set.of(
+            "ch.ruyalabs.payment.ResponseConsumed/total",
+            "ch.ruyalabs.payment.ResponseConsumed/Deserialize",
+            "ch.ruyalabs.payment.ResponseConsumed/Process",
+            "ch.ruyalabs.payment.RequestSent/total",
+            "ch.ruyalabs.payment.RequestSent/Acknowledge")));
+    }
+
+    @Test
+    public void testConsumerStagesAndProducerSendsAreTimed() throws Exception {
+        // When
+        paymentResponseConsumer.handlePaymentResponse(createResponseRecord("metrics-key"));
+        paymentRequestProducer.sendPaymentRequestAsync(createSamplePaymentRequest()).get(10, TimeUnit.SECONDS);
+
+        // Then
+        for (String stage : new String[]{"structured-mode", "deserialize", "validate", "map", "process"}) {
+            assertTrue(meterRegistry.get("payment.consumer.stage")
+                .tags("stage", stage, "topic", "payment-responses", "partition", "0", "outcome", "success")
+                .timer().count() > 0, stage);
+        }
+        assertTrue(meterRegistry.get("payment.consumer.record")
+            .tags("outcome", "processed", "status", "processed").timer().count() > 0);
+        assertTrue(meterRegistry.get("payment.producer.send")
+            .tags("topic", "payment-requests", "outcome", "success").timer().count() > 0);
+    }
+
     @Test
     public void testCloudEventSerialization() throws Exception {
         // Given
@@ -114,6 +205,21 @@ public class PaymentKafkaIntegrationTest {
         assertEquals(request.getRecipient().getName(), deserializedRequest.getRecipient().getName());
     }
 
+    private ConsumerRecord<String, String> createResponseRecord(String key) throws Exception {
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("payment-service"))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withTime(OffsetDateTime.now())
+                .withData(objectMapper.writeValueAsBytes(createSamplePaymentResponse()))
+                .build();
+        ConsumerRecord<String, String> consumerRecord = new ConsumerRecord<>("payment-responses", 0, 0L, key,
+            new String(new JsonFormat().serialize(cloudEvent)));
+        consumerRecord.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+        return consumerRecord;
+    }
+
     private PaymentDisbursementRequest createSamplePaymentRequest() {
         PaymentDisbursementRequest request = new PaymentDisbursementRequest();
 
@@ -0,0 +1,135 @@
+package ch.ruyalabs.springkafkalabs.kafka;
+
+import ch.ruyalabs.springkafkalabs.SpringKafkaLabsApplication;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.jackson.JsonFormat;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, topics = {"payment-requests", "payment-responses", "payment-outcomes"})
+@DirtiesContext
+@TestPropertySource(properties = {
+    "payment.kafka.consumer.mode=record",
+    "payment.kafka.topics.outcome=payment-outcomes"
+})
+public class PaymentOutcomeTest {
+
+    @Autowired
+    @Qualifier("retryKafkaTemplate")
+    private KafkaTemplate<String, Object> retryKafkaTemplate;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testRecordListenerPublishesTheOutcome() throws Exception {
+        // Given
+        UUID disbursementId = UUID.randomUUID();
+        ProducerRecord<String, Object> record = new ProducerRecord<>("payment-responses",
+            disbursementId.toString(), cloudEventJson(disbursementId));
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+
+        try (Consumer<String, String> consumer = outcomeConsumer()) {
+            // When
+            RecordMetadata sent = retryKafkaTemplate.send(record).get().getRecordMetadata();
+
+            // Then - The outcome id is derived from the position of the response, so a redelivery reuses it
+            ConsumerRecord<String, String> outcome = awaitOutcome(consumer, disbursementId.toString());
+            assertTrue(outcome.value().contains("com.ruyalabs.payment.disbursement.outcome"));
+            assertTrue(outcome.value().contains("\"status\":\"processed\""));
+            String outcomeId = UUID.nameUUIDFromBytes(("payment-responses-" + sent.partition() + "@" + sent.offset())
+                .getBytes(StandardCharsets.UTF_8)).toString();
+            assertTrue(outcome.value().contains("\"id\":\"" + outcomeId + "\""));
+            System.out.println("[DEBUG_LOG] Outcome of the record listener: " + outcome.value());
+        }
+    }
+
+    @Test
+    public void testTransactionsOutsideTheBatchModeAreRejectedAtStartup() {
+        // When - The application is started with transactions in the record mode
+        Exception exception = assertThrows(Exception.class, () -> new SpringApplicationBuilder(
+                SpringKafkaLabsApplication.class)
+            .run("--server.port=0",
+                "--spring.kafka.bootstrap-servers=" + embeddedKafkaBroker.getBrokersAsString(),
+                "--payment.kafka.consumer.mode=record",
+                "--payment.kafka.consumer.transactions.enabled=true",
+                "--payment.kafka.topics.outcome=payment-outcomes")
+            .close());
+
+        // Then
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(exception);
+        assertInstanceOf(IllegalStateException.class, cause);
+        assertTrue(cause.getMessage().contains("payment.kafka.consumer.mode=batch"));
+        System.out.println("[DEBUG_LOG] Startup rejected: " + cause.getMessage());
+    }
+
+    private Consumer<String, String> outcomeConsumer() {
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("payment-outcome-test", "false",
+            embeddedKafkaBroker);
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+            new StringDeserializer(), new StringDeserializer()).createConsumer();
+        consumer.subscribe(List.of("payment-outcomes"));
+        return consumer;
+    }
+
+    private static ConsumerRecord<String, String> awaitOutcome(Consumer<String, String> consumer, String key) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (System.nanoTime() < deadline) {
+            for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(200))) {
+                if (key.equals(record.key())) {
+                    return record;
+                }
+            }
+        }
+        return fail("No outcome with key " + key);
+    }
+
+    private String cloudEventJson(UUID disbursementId) throws Exception {
+        PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+        response.setDisbursementId(disbursementId);
+        response.setStatus(PaymentDisbursementResponse.Status.PROCESSED);
+        response.setProcessedAt(new Date());
+        response.setTransactionId("txn_outcome");
+
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("payment-service"))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withData(objectMapper.writeValueAsBytes(response))
+                .build();
+        return new String(new JsonFormat().serialize(cloudEvent), StandardCharsets.UTF_8);
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.test.annotation.DirtiesContext;
 import java.net.URI;
 import java.time.OffsetDateTime;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -159,6 +160,62 @@ public class PaymentResponseConsumerRequirementsTest {
         System.out.println("[DEBUG_LOG] Successfully handled invalid JSON gracefully");
     }
 
+    @Test
+    public void testConsumerReceivesRecordAsBytes() throws Exception {
+        // Given - A valid CloudEvent exactly as the broker hands it to the byte array consumer
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("payment-2-service"))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withTime(OffsetDateTime.now())
+                .withData(objectMapper.writeValueAsBytes(createSamplePaymentResponse()))
+                .build();
+
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(
+            "payment-responses", 0, 0L, "test-key", new JsonFormat().serialize(cloudEvent));
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+
+        // When & Then - Should process successfully
+        assertDoesNotThrow(() -> {
+            paymentResponseConsumer.handlePaymentResponseBytes(record);
+        });
+    }
+
+    @Test
+    public void testConsumerProcessesBatchWithInvalidRecords() throws Exception {
+        // Given - A batch mixing valid CloudEvents with records that must be rejected
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("payment-service"))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withTime(OffsetDateTime.now())
+                .withData(objectMapper.writeValueAsBytes(createSamplePaymentResponse()))
+                .build();
+        String cloudEventJson = new String(new JsonFormat().serialize(cloudEvent));
+
+        ConsumerRecord<String, String> valid = new ConsumerRecord<>(
+            "payment-responses", 0, 0L, "test-key", cloudEventJson);
+        valid.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+
+        ConsumerRecord<String, String> invalidJson = new ConsumerRecord<>(
+            "payment-responses", 0, 1L, "test-key", "{ invalid json structure");
+        invalidJson.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+
+        ConsumerRecord<String, String> empty = new ConsumerRecord<>(
+            "payment-responses", 0, 2L, "test-key", null);
+
+        ConsumerRecord<String, String> validAfterFailures = new ConsumerRecord<>(
+            "payment-responses", 0, 3L, "test-key", cloudEventJson);
+        validAfterFailures.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+
+        // When & Then - Bad records only fail themselves, the batch as a whole completes
+        assertDoesNotThrow(() -> {
+            paymentResponseConsumer.handlePaymentResponseBatch(List.of(valid, invalidJson, empty, validAfterFailures));
+        });
+    }
+
     private PaymentDisbursementResponse createSamplePaymentResponse() {
         PaymentDisbursementResponse response = new PaymentDisbursementResponse();
         response.setDisbursementId(UUID.fromString("a1b2c3d4-e5f6-7890-1234-567890abcdef"));
@@ -0,0 +1,150 @@
+package ch.ruyalabs.springkafkalabs.kafka;
+
+import ch.ruyalabs.springkafkalabs.config.KafkaConsumerConfig;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseConsumer;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseRecordFilter;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.PoisonPillException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, topics = {"payment-requests", "payment-responses"})
+@DirtiesContext
+public class PoisonPillTest {
+
+    @Autowired
+    @Qualifier("retryKafkaTemplate")
+    private KafkaTemplate<String, Object> retryKafkaTemplate;
+
+    @Autowired
+    private PaymentResponseConsumer paymentResponseConsumer;
+
+    @Autowired
+    private PaymentResponseRecordFilter recordFilter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Test
+    public void testMalformedRecordGoesToDltWithoutRetries() throws Exception {
+        // Given - A structured mode record whose value is not JSON, which no retry can fix
+        ProducerRecord<String, Object> record = new ProducerRecord<>("payment-responses", "poison-key",
+            "{\"specversion\": \"1.0\", \"id\": ");
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+        record.headers().add("trace-id", "abc".getBytes(StandardCharsets.UTF_8));
+        double before = failures("deserialization");
+
+        try (Consumer<String, String> consumer = dltConsumer("poison-pill-test-malformed")) {
+            // When
+            retryKafkaTemplate.send(record).get();
+
+            // Then - Published straight from the response topic, not from a retry topic, with the original value
+            // and headers plus the error headers
+            ConsumerRecord<String, String> dltRecord = awaitDltRecord(consumer, "poison-key");
+            assertEquals(record.value(), dltRecord.value());
+            assertEquals("abc", header(dltRecord, "trace-id"));
+            assertEquals("payment-responses", header(dltRecord, KafkaHeaders.DLT_ORIGINAL_TOPIC));
+            assertEquals(PoisonPillException.class.getName(), header(dltRecord, KafkaHeaders.DLT_EXCEPTION_FQCN));
+            assertEquals("deserialization", header(dltRecord, KafkaConsumerConfig.FAILURE_CLASS_HEADER));
+            assertEquals(before + 1, failures("deserialization"));
+            System.out.println("[DEBUG_LOG] DLT exception message: "
+                + header(dltRecord, KafkaHeaders.DLT_EXCEPTION_MESSAGE));
+        }
+    }
+
+    @Test
+    public void testRecordInNeitherModeIsDivertedToDlt() throws Exception {
+        // Given - A record without content-type and ce_* headers, which the record filter passes on to the listener
+        ProducerRecord<String, Object> record = new ProducerRecord<>("payment-responses", "unsupported-key",
+            "{\"specversion\":\"1.0\"}");
+        double before = failures("unsupported-mode");
+        double divertedBefore = recordFilter.getDivertedCount();
+
+        try (Consumer<String, String> consumer = dltConsumer("poison-pill-test-unsupported")) {
+            // When
+            retryKafkaTemplate.send(record).get();
+
+            // Then - Dead-lettered by the listener instead of being dropped silently
+            ConsumerRecord<String, String> dltRecord = awaitDltRecord(consumer, "unsupported-key");
+            assertEquals("{\"specversion\":\"1.0\"}", dltRecord.value());
+            assertEquals("payment-responses", header(dltRecord, KafkaHeaders.DLT_ORIGINAL_TOPIC));
+            assertEquals("unsupported-mode", header(dltRecord, KafkaConsumerConfig.FAILURE_CLASS_HEADER));
+            assertEquals(before + 1, failures("unsupported-mode"));
+            // The DLT listener shares the container factory, so the filter may see the DLT record as well
+            assertTrue(recordFilter.getDivertedCount() > divertedBefore);
+        }
+    }
+
+    @Test
+    public void testListenerPublishesPoisonPillAndReturns() throws Exception {
+        // Given - A record in neither mode handed to the listener directly
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("payment-responses", 0, 42L, "unsupported-direct-key",
+            "{\"specversion\":\"1.0\"}".getBytes(StandardCharsets.UTF_8));
+
+        try (Consumer<String, String> consumer = dltConsumer("poison-pill-test-direct")) {
+            // When - The listener returns normally, the record does not go through the error handler
+            assertDoesNotThrow(() -> paymentResponseConsumer.handlePaymentResponseBytes(record));
+
+            // Then
+            ConsumerRecord<String, String> dltRecord = awaitDltRecord(consumer, "unsupported-direct-key");
+            assertEquals(42L,
+                ByteBuffer.wrap(dltRecord.headers().lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET).value()).getLong());
+            assertEquals("unsupported-mode", header(dltRecord, KafkaConsumerConfig.FAILURE_CLASS_HEADER));
+        }
+    }
+
+    private Consumer<String, String> dltConsumer(String group) {
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps(group, "false", embeddedKafkaBroker);
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+            new StringDeserializer(), new StringDeserializer()).createConsumer();
+        consumer.subscribe(List.of("payment-responses-dlt"));
+        return consumer;
+    }
+
+    private static ConsumerRecord<String, String> awaitDltRecord(Consumer<String, String> consumer, String key) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(200))) {
+                if (key.equals(record.key())) {
+                    return record;
+                }
+            }
+        }
+        return fail("No DLT record with key " + key);
+    }
+
+    private static String header(ConsumerRecord<String, String> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    private double failures(String failureClass) {
+        return meterRegistry.get("payment.consumer.failures").tag("class", failureClass).counter().count();
+    }
+}
@@ -0,0 +1,107 @@
+package ch.ruyalabs.springkafkalabs.kafka;
+
+import ch.ruyalabs.springkafkalabs.config.KafkaConsumerConfig;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.jackson.JsonFormat;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, topics = {"payment-requests", "payment-responses"})
+@DirtiesContext
+@TestPropertySource(properties = {
+    "payment.kafka.topics.retry.initial-delay=10",
+    "payment.kafka.topics.retry.multiplier=2",
+    "payment.kafka.topics.retry.max-delay=100"
+})
+public class RetryTopicTest {
+
+    @Autowired
+    @Qualifier("retryKafkaTemplate")
+    private KafkaTemplate<String, Object> retryKafkaTemplate;
+
+    @Autowired
+    private KafkaAdmin kafkaAdmin;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testRetryTopicsAndDltAreCreated() throws Exception {
+        try (AdminClient adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties())) {
+            Set<String> topics = adminClient.listTopics().names().get();
+
+            assertTrue(topics.containsAll(Set.of(
+                "payment-responses-retry-0", "payment-responses-retry-1", "payment-responses-retry-2",
+                "payment-responses-dlt")));
+        }
+    }
+
+    @Test
+    public void testFailingRecordEndsUpInDlt() throws Exception {
+        // Given - A valid CloudEvent whose payment response cannot be processed (no status)
+        PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+        response.setDisbursementId(UUID.randomUUID());
+        CloudEvent cloudEvent = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withSource(URI.create("payment-service"))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withData(objectMapper.writeValueAsBytes(response))
+                .build();
+
+        ProducerRecord<String, Object> record = new ProducerRecord<>("payment-responses", "retry-key",
+            new String(new JsonFormat().serialize(cloudEvent), StandardCharsets.UTF_8));
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("retry-topic-test", "false", embeddedKafkaBroker);
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(consumerProps,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            consumer.subscribe(List.of("payment-responses-dlt"));
+
+            // When
+            retryKafkaTemplate.send(record).get();
+
+            // Then - After the retry topics the record is published to the DLT with its original headers
+            ConsumerRecord<String, String> dltRecord =
+                KafkaTestUtils.getSingleRecord(consumer, "payment-responses-dlt", Duration.ofSeconds(30));
+            assertEquals("retry-key", dltRecord.key());
+            assertNotNull(dltRecord.headers().lastHeader("content-type"));
+            assertEquals(record.value(), dltRecord.value());
+            Header failureClass = dltRecord.headers().lastHeader(KafkaConsumerConfig.FAILURE_CLASS_HEADER);
+            assertNotNull(failureClass);
+            assertEquals("transient", new String(failureClass.value(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.jackson.JsonFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CloudEventAttributeValidatorTest {
+
+    private static final ClassPathResource SCHEMA =
+        new ClassPathResource("json/schema/cloudevent-response-schema.json");
+
+    private final CloudEventAttributeValidator validator = new CloudEventAttributeValidator(SCHEMA, List.of());
+
+    @Test
+    public void testRulesAreCompiledFromSchema() {
+        assertEquals(Set.of("com.ruyalabs.payment.disbursement.request"), validator.getAllowedTypes());
+        assertEquals(Set.of("payment-service", "payment-2-service"), validator.getAllowedSources());
+    }
+
+    @Test
+    public void testValidCloudEventPasses() throws IOException {
+        assertTrue(validator.validate(fixture("json/valid_cloudevent_response.json")));
+    }
+
+    @Test
+    public void testWrongSourceAndTypeAreRejected() throws IOException {
+        assertFalse(validator.validate(fixture("json/invalid_cloudevent_wrong_source.json")));
+        assertFalse(validator.validate(fixture("json/invalid_cloudevent_wrong_type.json")));
+    }
+
+    @Test
+    public void testIdDataContentTypeAndDataAreChecked() {
+        assertFalse(validator.validate(event("payment-service").withId(" ").build()));
+        assertFalse(validator.validate(event("payment-service").withDataContentType("application/xml").build()));
+        assertFalse(validator.validate(event("payment-service").withoutData().build()));
+        assertTrue(validator.validate(event("payment-service").withoutDataContentType().build()));
+    }
+
+    @Test
+    public void testAdditionalSourcesFromConfiguration() {
+        CloudEventAttributeValidator extended =
+            new CloudEventAttributeValidator(SCHEMA, List.of("payment-3-service"));
+
+        assertTrue(extended.validate(event("payment-3-service").build()));
+        assertFalse(validator.validate(event("payment-3-service").build()));
+    }
+
+    private CloudEventBuilder event(String source) {
+        return CloudEventBuilder.v1()
+                .withId("550e8400-e29b-41d4-a716-446655440001")
+                .withSource(URI.create(source))
+                .withType("com.ruyalabs.payment.disbursement.request")
+                .withDataContentType("application/json")
+                .withData("{}".getBytes());
+    }
+
+    private CloudEvent fixture(String path) throws IOException {
+        return new JsonFormat().deserialize(new ClassPathResource(path).getContentAsByteArray());
+    }
+}
@@ -0,0 +1,86 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.data.PojoCloudEventData;
+import io.cloudevents.jackson.JsonFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CloudEventResponseDecoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final CloudEventResponseDecoder decoder = new CloudEventResponseDecoder(objectMapper);
+
+    @Test
+    public void testDecodesEnvelopeAndDataInOnePass() throws Exception {
+        // Given
+        byte[] payload = new ClassPathResource("json/valid_cloudevent_response.json").getContentAsByteArray();
+
+        // When
+        CloudEvent cloudEvent = decoder.decode(payload);
+
+        // Then - Attributes match what the generic JsonFormat produces
+        assertNotNull(cloudEvent);
+        CloudEvent expected = new JsonFormat().deserialize(payload);
+        assertEquals(expected.getSpecVersion(), cloudEvent.getSpecVersion());
+        assertEquals(expected.getId(), cloudEvent.getId());
+        assertEquals(expected.getSource(), cloudEvent.getSource());
+        assertEquals(expected.getType(), cloudEvent.getType());
+        assertEquals(expected.getDataContentType(), cloudEvent.getDataContentType());
+        assertEquals(expected.getTime(), cloudEvent.getTime());
+
+        // And the data is already bound to the generated class
+        PojoCloudEventData<?> data = assertInstanceOf(PojoCloudEventData.class, cloudEvent.getData());
+        PaymentDisbursementResponse response = assertInstanceOf(PaymentDisbursementResponse.class, data.getValue());
+        assertEquals(UUID.fromString("550e8400-e29b-41d4-a716-446655440000"), response.getDisbursementId());
+        assertEquals(PaymentDisbursementResponse.Status.PROCESSED, response.getStatus());
+        assertEquals("txn_123456789", response.getTransactionId());
+        assertEquals("USD", response.getAmount().getCurrency());
+    }
+
+    @Test
+    public void testDecodesExtensionsAndAttributesAfterData() {
+        // Given - data first, attributes and extensions afterwards
+        String json = "{\"data\":{\"disbursementId\":\"550e8400-e29b-41d4-a716-446655440000\",\"status\":\"failed\"},"
+                + "\"specversion\":\"1.0\",\"id\":\"1\",\"source\":\"payment-service\","
+                + "\"type\":\"com.ruyalabs.payment.disbursement.request\",\"traceid\":\"abc\",\"retries\":2,\"replayed\":true}";
+
+        // When
+        CloudEvent cloudEvent = decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertNotNull(cloudEvent);
+        assertEquals("abc", cloudEvent.getExtension("traceid"));
+        assertEquals(2, cloudEvent.getExtension("retries"));
+        assertEquals(true, cloudEvent.getExtension("replayed"));
+        PojoCloudEventData<?> data = assertInstanceOf(PojoCloudEventData.class, cloudEvent.getData());
+        assertEquals(PaymentDisbursementResponse.Status.FAILED, ((PaymentDisbursementResponse) data.getValue()).getStatus());
+    }
+
+    @Test
+    public void testLeavesNonStandardPayloadsToEventFormat() {
+        String attributes = "\"specversion\":\"1.0\",\"id\":\"1\",\"source\":\"payment-service\","
+                + "\"type\":\"com.ruyalabs.payment.disbursement.request\"";
+
+        // data_base64, non-object data, non-JSON content type, other spec versions and malformed input
+        assertNull(decode("{" + attributes + ",\"data_base64\":\"e30=\"}"));
+        assertNull(decode("{" + attributes + ",\"data\":\"plain text\"}"));
+        assertNull(decode("{" + attributes + ",\"datacontenttype\":\"application/xml\",\"data\":{}}"));
+        assertNull(decode("{\"specversion\":\"0.3\",\"id\":\"1\",\"source\":\"payment-service\",\"type\":\"t\",\"data\":{}}"));
+        assertNull(decode("{\"id\":\"1\",\"source\":\"payment-service\",\"type\":\"t\",\"data\":{}}"));
+        assertNull(decode("{ invalid json structure"));
+        assertNull(decode("{" + attributes + ",\"data\":{\"status\":\"unknown-status\"}}"));
+    }
+
+    private CloudEvent decode(String json) {
+        return decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
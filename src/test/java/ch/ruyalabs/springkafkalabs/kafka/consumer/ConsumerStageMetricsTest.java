@@ -0,0 +1,75 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.springkafkalabs.kafka.consumer.ConsumerStageMetrics.RecordOutcome;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.ConsumerStageMetrics.Stage;
+import ch.ruyalabs.springkafkalabs.kafka.consumer.ConsumerStageMetrics.StageOutcome;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsumerStageMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ConsumerStageMetrics metrics = new ConsumerStageMetrics(meterRegistry);
+
+    private final ConsumerRecord<String, String> consumerRecord =
+        new ConsumerRecord<>("payment-responses", 2, 0L, "key", "value");
+
+    @Test
+    public void testStagesAreTaggedByTopicPartitionOutcomeAndStatus() {
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+
+        metrics.stage(Stage.STRUCTURED_MODE, consumerRecord, true, start);
+        metrics.stage(Stage.VALIDATE, consumerRecord, false, start);
+        metrics.stage(Stage.PROCESS, consumerRecord, StageOutcome.ERROR, PaymentDisbursementResponse.Status.FAILED, start);
+
+        Timer structuredMode = meterRegistry.get("payment.consumer.stage")
+            .tags("stage", "structured-mode", "topic", "payment-responses", "partition", "2",
+                "outcome", "success", "status", "none")
+            .timer();
+        assertEquals(1, structuredMode.count());
+        assertTrue(structuredMode.totalTime(TimeUnit.MILLISECONDS) >= 5);
+
+        assertEquals(1, meterRegistry.get("payment.consumer.stage")
+            .tags("stage", "validate", "outcome", "rejected").timer().count());
+        assertEquals(1, meterRegistry.get("payment.consumer.stage")
+            .tags("stage", "process", "outcome", "error", "status", "failed").timer().count());
+    }
+
+    @Test
+    public void testRecordsOfTheSameTagsShareOneTimer() {
+        for (int i = 0; i < 3; i++) {
+            metrics.record(consumerRecord, RecordOutcome.PROCESSED, PaymentDisbursementResponse.Status.PROCESSED,
+                System.nanoTime());
+        }
+        metrics.record(consumerRecord, RecordOutcome.DUPLICATE, null, System.nanoTime());
+
+        assertEquals(3, meterRegistry.get("payment.consumer.record")
+            .tags("outcome", "processed", "status", "processed").timer().count());
+        assertEquals(1, meterRegistry.get("payment.consumer.record")
+            .tags("outcome", "duplicate", "status", "none").timer().count());
+        assertEquals(2, meterRegistry.get("payment.consumer.record").timers().size());
+    }
+
+    @Test
+    public void testFailuresAreCountedPerClass() {
+        metrics.failure(PaymentResponseFailure.VALIDATION);
+        metrics.failure(PaymentResponseFailure.VALIDATION);
+        metrics.failure(PaymentResponseFailure.TRANSIENT);
+
+        assertEquals(2.0, meterRegistry.get("payment.consumer.failures")
+            .tags("class", "validation", "retryable", "false").counter().count());
+        assertEquals(1.0, meterRegistry.get("payment.consumer.failures")
+            .tags("class", "transient", "retryable", "true").counter().count());
+        // Every class is registered up front, so the counters exist before the first failure
+        assertEquals(PaymentResponseFailure.values().length,
+            meterRegistry.get("payment.consumer.failures").counters().size());
+    }
+}
@@ -0,0 +1,96 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DuplicateResponseFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final DuplicateResponseFilter filter = filter(true);
+
+    @Test
+    public void testStructuredIdIsReadFromTopLevelOnly() {
+        // The data object carries an id of its own and comes before the event id
+        String payload = "{\"specversion\":\"1.0\",\"data\":{\"id\":\"nested\",\"items\":[1,2]},"
+            + "\"id\":\"event-1\",\"source\":\"payment-service\"}";
+
+        byte[] eventId = filter.eventId(structuredRecord(payload), bytes(payload));
+
+        assertArrayEquals(bytes("event-1"), eventId);
+    }
+
+    @Test
+    public void testBinaryIdIsReadFromHeader() {
+        ConsumerRecord<String, Object> consumerRecord = record();
+        consumerRecord.headers().add("ce_specversion", bytes("1.0"));
+        consumerRecord.headers().add("ce_id", bytes("event-2"));
+
+        assertArrayEquals(bytes("event-2"), filter.eventId(consumerRecord, bytes("{}")));
+    }
+
+    @Test
+    public void testMalformedOrMissingIdYieldsNull() {
+        assertNull(filter.eventId(structuredRecord("not json"), bytes("not json")));
+        assertNull(filter.eventId(structuredRecord("{\"specversion\":\"1.0\"}"), bytes("{\"specversion\":\"1.0\"}")));
+        assertNull(filter.eventId(record(), bytes("{}")));
+    }
+
+    @Test
+    public void testOnlyProcessedIdsAreDuplicates() {
+        byte[] eventId = bytes("event-3");
+
+        assertFalse(filter.isDuplicate(eventId));
+        filter.markProcessed(eventId);
+        assertTrue(filter.isDuplicate(eventId));
+
+        assertEquals(1.0, meterRegistry.get("payment.consumer.dedup.duplicates").counter().count());
+        assertTrue(meterRegistry.get("payment.consumer.dedup.memory").gauge().value() > 0);
+        System.out.println("[DEBUG_LOG] Bytes per id: "
+            + meterRegistry.get("payment.consumer.dedup.bytes-per-id").gauge().value());
+    }
+
+    @Test
+    public void testDisabledFilterReadsNoId() {
+        DuplicateResponseFilter disabled = filter(false);
+        String payload = "{\"id\":\"event-4\"}";
+
+        assertNull(disabled.eventId(structuredRecord(payload), bytes(payload)));
+        disabled.markProcessed(bytes("event-4"));
+        assertFalse(disabled.isDuplicate(bytes("event-4")));
+    }
+
+    @Test
+    public void testDisabledFilterAllocatesNoFilterAndRegistersNoMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        new DuplicateResponseFilter(false, Duration.ofMinutes(10), 1_000_000, 0.000001, registry);
+
+        assertTrue(registry.find("payment.consumer.dedup.memory").meters().isEmpty());
+        assertTrue(registry.find("payment.consumer.dedup.duplicates").meters().isEmpty());
+    }
+
+    private DuplicateResponseFilter filter(boolean enabled) {
+        return new DuplicateResponseFilter(enabled, Duration.ofMinutes(10), 10_000, 0.000001, meterRegistry);
+    }
+
+    private ConsumerRecord<String, Object> record() {
+        return new ConsumerRecord<>("payment-responses", 0, 0L, "key", new byte[0]);
+    }
+
+    private ConsumerRecord<String, Object> structuredRecord(String payload) {
+        ConsumerRecord<String, Object> consumerRecord = new ConsumerRecord<>("payment-responses", 0, 0L, "key", payload);
+        consumerRecord.headers().add("content-type", bytes("application/cloudevents+json; charset=UTF-8"));
+        return consumerRecord;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,54 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FailedRecordAttemptsTest {
+
+    private final FailedRecordAttempts attempts = new FailedRecordAttempts(3);
+
+    @Test
+    public void testRecordIsExhaustedOnItsLastAttempt() {
+        ConsumerRecord<String, String> record = record(0, 5);
+
+        assertFalse(attempts.failed(record));
+        assertFalse(attempts.failed(record));
+        assertTrue(attempts.failed(record));
+        assertEquals(1, attempts.getTrackedRecords());
+    }
+
+    @Test
+    public void testRecordsAreCountedByTopicPartitionAndOffset() {
+        // Given - Two failures of one record
+        attempts.failed(record(0, 5));
+        attempts.failed(record(0, 5));
+
+        // When - Neighbouring records fail or succeed
+        assertFalse(attempts.failed(record(0, 6)));
+        assertFalse(attempts.failed(record(1, 5)));
+        attempts.clear(record(0, 4));
+
+        // Then - Only the record itself is exhausted
+        assertTrue(attempts.failed(record(0, 5)));
+        assertEquals(3, attempts.getTrackedRecords());
+    }
+
+    @Test
+    public void testClearedRecordStartsOver() {
+        ConsumerRecord<String, String> record = record(0, 5);
+        attempts.failed(record);
+        attempts.failed(record);
+
+        attempts.clear(record);
+
+        assertEquals(0, attempts.getTrackedRecords());
+        assertFalse(attempts.failed(record));
+        System.out.println("[DEBUG_LOG] Attempts start over after clear");
+    }
+
+    private static ConsumerRecord<String, String> record(int partition, long offset) {
+        return new ConsumerRecord<>("payment-responses", partition, offset, "disbursement", "value");
+    }
+}
@@ -0,0 +1,116 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyOrderedDispatcherTest {
+
+    private final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher(4);
+
+    @AfterEach
+    public void tearDown() {
+        dispatcher.destroy();
+    }
+
+    @Test
+    public void testRecordsWithTheSameKeyAreProcessedInOrder() {
+        // Given - 8 keys interleaved over 200 records
+        List<ConsumerRecord<String, String>> records = records(200, 8);
+        Map<String, List<Long>> processed = new ConcurrentHashMap<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        // When
+        dispatcher.dispatch(records, record -> {
+            sleepBriefly();
+            threads.add(Thread.currentThread().getName());
+            processed.computeIfAbsent(record.key(), key -> new CopyOnWriteArrayList<>()).add(record.offset());
+        });
+
+        // Then - Every record is processed once, in offset order per key, on more than one thread
+        assertEquals(8, processed.size());
+        processed.values().forEach(offsets -> {
+            List<Long> sorted = new ArrayList<>(offsets);
+            sorted.sort(Long::compare);
+            assertEquals(sorted, offsets);
+        });
+        assertEquals(200, processed.values().stream().mapToInt(List::size).sum());
+        assertTrue(threads.size() > 1);
+        System.out.println("[DEBUG_LOG] Processed 200 records on threads " + threads);
+    }
+
+    @Test
+    public void testFirstFailedIndexIsReportedAndPrefixIsProcessed() {
+        // Given - Two records in different lanes fail
+        List<ConsumerRecord<String, String>> records = records(40, 8);
+        Set<Long> processed = ConcurrentHashMap.newKeySet();
+
+        // When
+        BatchListenerFailedException exception = assertThrows(BatchListenerFailedException.class, () ->
+            dispatcher.dispatch(records, record -> {
+                if (record.offset() == 13 || record.offset() == 30) {
+                    throw new IllegalStateException("failed " + record.offset());
+                }
+                processed.add(record.offset());
+            }));
+
+        // Then - The lowest failed index is reported and everything before it was processed
+        assertEquals(13, exception.getIndex());
+        assertEquals("failed 13", exception.getCause().getMessage());
+        for (long offset = 0; offset < 13; offset++) {
+            assertTrue(processed.contains(offset), "offset " + offset + " not processed");
+        }
+        // Record 21 has the same key as 13 and must not overtake it
+        assertFalse(processed.contains(21L));
+    }
+
+    @Test
+    public void testResultsAreCollectedInBatchOrder() {
+        // Given - 8 keys interleaved over 100 records
+        List<ConsumerRecord<String, String>> records = records(100, 8);
+
+        // When - Every other record has no result
+        List<Long> results = dispatcher.dispatchAndCollect(records, record -> {
+            sleepBriefly();
+            return record.offset() % 2 == 0 ? record.offset() : null;
+        });
+
+        // Then
+        assertEquals(100, results.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 0 ? Long.valueOf(i) : null, results.get(i));
+        }
+    }
+
+    @Test
+    public void testEmptyBatch() {
+        assertDoesNotThrow(() -> dispatcher.dispatch(List.<ConsumerRecord<String, String>>of(), record -> fail()));
+    }
+
+    private List<ConsumerRecord<String, String>> records(int count, int keys) {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new ConsumerRecord<>("payment-responses", 0, i, "disbursement-" + (i % keys), "value"));
+        }
+        return records;
+    }
+
+    private void sleepBriefly() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
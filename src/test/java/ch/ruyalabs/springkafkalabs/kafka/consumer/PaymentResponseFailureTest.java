@@ -0,0 +1,51 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.support.serializer.DeserializationException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentResponseFailureTest {
+
+    @Test
+    public void testOnlyTransientFailuresAreRetryable() {
+        for (PaymentResponseFailure failure : PaymentResponseFailure.values()) {
+            assertEquals(failure == PaymentResponseFailure.TRANSIENT, failure.retryable(), failure.name());
+        }
+        assertEquals("unsupported-mode", PaymentResponseFailure.UNSUPPORTED_MODE.tagValue());
+    }
+
+    @Test
+    public void testWrappedPoisonPillKeepsItsClass() {
+        PoisonPillException poisonPill = new PoisonPillException(PaymentResponseFailure.VALIDATION, "invalid type");
+
+        assertEquals(PaymentResponseFailure.VALIDATION, PaymentResponseFailure.classify(poisonPill));
+        assertEquals(PaymentResponseFailure.VALIDATION,
+            PaymentResponseFailure.classify(new ListenerExecutionFailedException("Listener failed", poisonPill)));
+    }
+
+    @Test
+    public void testDeserializationExceptionIsNotRetryable() {
+        DeserializationException exception = new DeserializationException("Failed to deserialize",
+            "invalid".getBytes(StandardCharsets.UTF_8), false, new IllegalStateException("Unexpected character"));
+
+        assertEquals(PaymentResponseFailure.DESERIALIZATION, PaymentResponseFailure.classify(exception));
+        assertFalse(PaymentResponseFailure.classify(exception).retryable());
+    }
+
+    @Test
+    public void testOtherExceptionsAreTransient() {
+        assertEquals(PaymentResponseFailure.TRANSIENT,
+            PaymentResponseFailure.classify(new ListenerExecutionFailedException("Listener failed",
+                new IllegalStateException("Status index unavailable"))));
+    }
+
+    @Test
+    public void testPoisonPillRejectsTransientClass() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new PoisonPillException(PaymentResponseFailure.TRANSIENT, "not a poison pill"));
+    }
+}
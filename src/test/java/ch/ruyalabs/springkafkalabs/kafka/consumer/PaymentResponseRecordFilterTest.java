@@ -0,0 +1,112 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.springkafkalabs.kafka.consumer.PaymentResponseRecordFilter.Reason;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentResponseRecordFilterTest {
+
+    private static final String ALLOWED_TYPE = "com.ruyalabs.payment.disbursement.request";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PaymentResponseRecordFilter filter = filter(false, true);
+
+    @Test
+    public void testStructuredRecordIsAccepted() {
+        ConsumerRecord<String, Object> consumerRecord = record("key");
+        header(consumerRecord, "content-type", "application/cloudevents+json; charset=UTF-8");
+
+        assertFalse(filter.filter(consumerRecord));
+        assertEquals(1.0, filter.getAcceptedCount());
+    }
+
+    @Test
+    public void testBinaryRecordIsCheckedAgainstAllowedTypeAndSource() {
+        assertFalse(filter.filter(binaryRecord(ALLOWED_TYPE, "payment-2-service")));
+        assertTrue(filter.filter(binaryRecord("com.other.team.event", "payment-service")));
+        assertTrue(filter.filter(binaryRecord(ALLOWED_TYPE, "other-service")));
+
+        assertEquals(1.0, filter.getAcceptedCount());
+        assertEquals(1.0, filter.getFilteredCount(Reason.TYPE_NOT_ALLOWED));
+        assertEquals(1.0, filter.getFilteredCount(Reason.SOURCE_NOT_ALLOWED));
+    }
+
+    @Test
+    public void testRecordWithoutCloudEventHeadersIsDivertedToTheListener() {
+        ConsumerRecord<String, Object> consumerRecord = record("key");
+        header(consumerRecord, "content-type", "application/json");
+
+        assertFalse(filter.filter(consumerRecord));
+        assertFalse(filter.filter(record("key")));
+        assertEquals(2.0, filter.getDivertedCount());
+        assertEquals(0.0, filter.getAcceptedCount());
+        assertEquals(0.0, filter.getFilteredCount(Reason.NOT_A_CLOUDEVENT));
+    }
+
+    @Test
+    public void testRecordWithoutCloudEventHeadersIsDroppedWhenNotDiverted() {
+        PaymentResponseRecordFilter dropping = filter(false, false);
+
+        assertTrue(dropping.filter(record("key")));
+        assertEquals(1.0, dropping.getFilteredCount(Reason.NOT_A_CLOUDEVENT));
+        assertEquals(0.0, dropping.getDivertedCount());
+    }
+
+    @Test
+    public void testMissingKeyIsDroppedOnlyWhenRequired() {
+        ConsumerRecord<String, Object> consumerRecord = binaryRecord(ALLOWED_TYPE, "payment-service");
+        PaymentResponseRecordFilter strict = filter(true, true);
+
+        assertFalse(filter.filter(withoutKey(consumerRecord)));
+        assertTrue(strict.filter(withoutKey(consumerRecord)));
+        assertEquals(1.0, strict.getFilteredCount(Reason.MISSING_KEY));
+    }
+
+    @Test
+    public void testCountersAreRegistered() {
+        filter.filter(record("key"));
+
+        assertEquals(1.0, meterRegistry.get("payment.consumer.filter.records")
+            .tag("result", "diverted").tag("reason", "not_a_cloudevent").counter().count());
+        assertEquals(0.0, meterRegistry.get("payment.consumer.filter.records")
+            .tag("result", "filtered").tag("reason", "not_a_cloudevent").counter().count());
+        assertEquals(0.0, meterRegistry.get("payment.consumer.filter.records")
+            .tag("result", "accepted").counter().count());
+    }
+
+    private PaymentResponseRecordFilter filter(boolean requireKey, boolean divertUnsupported) {
+        CloudEventAttributeValidator validator = new CloudEventAttributeValidator(
+            new ClassPathResource("json/schema/cloudevent-response-schema.json"), List.of());
+        return new PaymentResponseRecordFilter(validator, meterRegistry, requireKey, divertUnsupported);
+    }
+
+    private ConsumerRecord<String, Object> record(String key) {
+        return new ConsumerRecord<>("payment-responses", 0, 0L, key, new byte[0]);
+    }
+
+    private ConsumerRecord<String, Object> binaryRecord(String type, String source) {
+        ConsumerRecord<String, Object> consumerRecord = record("key");
+        header(consumerRecord, "ce_specversion", "1.0");
+        header(consumerRecord, "ce_type", type);
+        header(consumerRecord, "ce_source", source);
+        return consumerRecord;
+    }
+
+    private ConsumerRecord<String, Object> withoutKey(ConsumerRecord<String, Object> consumerRecord) {
+        ConsumerRecord<String, Object> copy = record(null);
+        consumerRecord.headers().forEach(header -> copy.headers().add(header));
+        return copy;
+    }
+
+    private void header(ConsumerRecord<String, Object> consumerRecord, String key, String value) {
+        consumerRecord.headers().add(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+}
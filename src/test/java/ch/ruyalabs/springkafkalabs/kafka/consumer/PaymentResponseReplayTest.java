@@ -0,0 +1,124 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import ch.ruyalabs.springkafkalabs.kafka.correlation.PaymentCorrelationStore;
+import ch.ruyalabs.springkafkalabs.kafka.producer.PaymentOutcomeProducer;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusIndex;
+import ch.ruyalabs.springkafkalabs.kafka.status.PaymentStatusSnapshotter;
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class PaymentResponseReplayTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("payment-responses", 0);
+    private static final UUID DISBURSEMENT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+
+    @TempDir
+    private Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ConsumerRecord<?, ?>> deadLettered = new ArrayList<>();
+    private PaymentCorrelationStore correlationStore;
+    private PaymentStatusIndex statusIndex;
+    private PaymentResponseConsumer consumer;
+    private String validResponse;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        try (InputStream in = new ClassPathResource("json/valid_cloudevent_response.json").getInputStream()) {
+            validResponse = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        // The snapshot reflects the partition up to offset 1
+        Path path = directory.resolve("status.snapshot");
+        PaymentStatusIndex snapshotIndex = new PaymentStatusIndex(1024, meterRegistry);
+        snapshotIndex.recordPosition(PARTITION, 1L);
+        new PaymentStatusSnapshotter(snapshotIndex, false, path, Duration.ofHours(1)).snapshot();
+        statusIndex = new PaymentStatusIndex(1024, meterRegistry);
+        new PaymentStatusSnapshotter(statusIndex, false, path, Duration.ofHours(1)).restore();
+
+        correlationStore = new PaymentCorrelationStore(Duration.ofSeconds(30), 1000, meterRegistry);
+        consumer = new PaymentResponseConsumer(
+            new CloudEventAttributeValidator(new ClassPathResource("json/schema/cloudevent-response-schema.json"),
+                List.of()),
+            new KeyOrderedDispatcher(1), correlationStore,
+            new DuplicateResponseFilter(true, Duration.ofMinutes(10), 1000, 0.000001, meterRegistry),
+            statusIndex, new ConsumerStageMetrics(meterRegistry),
+            (record, exception) -> deadLettered.add(record),
+            new PaymentOutcomeProducer(null, "", new ObjectMapper()), new FailedRecordAttempts(4));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        correlationStore.destroy();
+    }
+
+    @Test
+    public void testRecordsBelowTheCommittedOffsetOnlyUpdateTheStatusIndex() {
+        // Given - The committed offset is 3, ahead of the snapshot
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+        consumer.onPartitionsAssigned(Map.of(PARTITION, 3L), callback);
+        verify(callback).seek("payment-responses", 0, 1L);
+
+        // When - The records between the snapshot and the committed offset are redelivered, then a new one
+        consumer.handlePaymentResponse(record(1L, validResponse));
+        consumer.handlePaymentResponse(record(2L, "not a cloud event"));
+        consumer.handlePaymentResponse(record(3L, "not a cloud event"));
+
+        // Then - The replayed response is in the index, the replayed poison pill is not dead-lettered again and
+        // only the record at the committed offset went through the pipeline
+        assertEquals(PaymentDisbursementResponse.Status.PROCESSED, statusIndex.get(DISBURSEMENT_ID).status());
+        assertEquals(1, deadLettered.size());
+        assertEquals(3L, deadLettered.get(0).offset());
+        assertEquals(1L, meterRegistry.find("payment.consumer.record").timers().stream()
+            .mapToLong(timer -> timer.count()).sum());
+        System.out.println("[DEBUG_LOG] Dead-lettered offsets: " + deadLettered.stream().map(ConsumerRecord::offset)
+            .toList());
+    }
+
+    @Test
+    public void testSnapshotAtTheCommittedOffsetIsNotSought() {
+        // Given
+        ConsumerSeekCallback callback = mock(ConsumerSeekCallback.class);
+
+        // When - The snapshot already reflects everything up to the committed offset
+        consumer.onPartitionsAssigned(Map.of(PARTITION, 1L), callback);
+        consumer.handlePaymentResponse(record(1L, "not a cloud event"));
+
+        // Then
+        verify(callback, never()).seek(anyString(), anyInt(), anyLong());
+        assertEquals(1, deadLettered.size());
+    }
+
+    private static ConsumerRecord<String, String> record(long offset, String value) {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset,
+            DISBURSEMENT_ID.toString(), value);
+        record.headers().add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+}
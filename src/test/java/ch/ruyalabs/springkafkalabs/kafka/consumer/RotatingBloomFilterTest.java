@@ -0,0 +1,73 @@
+package ch.ruyalabs.springkafkalabs.kafka.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RotatingBloomFilterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testAddedKeysAreFound() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(10_000, 0.001, Duration.ofMinutes(10), clock::get);
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(key("id-" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(key("id-" + i)));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysNearConfiguredRate() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(100_000, 0.01, Duration.ofMinutes(10), clock::get);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put(key(UUID.randomUUID().toString()));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(key(UUID.randomUUID().toString()))) {
+                falsePositives++;
+            }
+        }
+        double rate = falsePositives / 100_000.0;
+
+        System.out.println("[DEBUG_LOG] False positive rate: " + rate + ", memory: " + filter.getMemoryBytes()
+            + " bytes, hash functions: " + filter.getHashFunctions());
+        assertTrue(rate < 0.02);
+    }
+
+    @Test
+    public void testKeysAreForgottenAfterTwoWindows() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1_000, 0.001, Duration.ofSeconds(10), clock::get);
+        filter.put(key("a"));
+
+        clock.addAndGet(Duration.ofSeconds(15).toNanos());
+        assertTrue(filter.mightContain(key("a")));
+
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertFalse(filter.mightContain(key("a")));
+    }
+
+    @Test
+    public void testMemoryFollowsExpectedKeysAndRate() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1_000_000, 0.000001, Duration.ofMinutes(10), clock::get);
+
+        // -ln(p / 2) / ln(2)^2 bits per key and generation
+        double bitsPerKey = (double) filter.getBitsPerGeneration() / 1_000_000;
+        assertEquals(30.2, bitsPerKey, 0.1);
+        assertEquals(2 * filter.getBitsPerGeneration() / 8, filter.getMemoryBytes());
+    }
+
+    private static byte[] key(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,196 @@
+package ch.ruyalabs.springkafkalabs.kafka.correlation;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentCorrelationStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<PaymentCorrelationStore> stores = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        stores.forEach(PaymentCorrelationStore::destroy);
+    }
+
+    @Test
+    public void testResponseCompletesPendingRequest() throws Exception {
+        PaymentCorrelationStore store = store(Duration.ofSeconds(30), 10);
+        UUID disbursementId = UUID.randomUUID();
+
+        CompletableFuture<PaymentDisbursementResponse> future = store.register(disbursementId);
+        assertEquals(1.0, meterRegistry.get("payment.correlation.pending").gauge().value());
+
+        assertTrue(store.complete(response(disbursementId)));
+        assertEquals(disbursementId, future.get().getDisbursementId());
+        assertEquals(0, store.getPendingCount());
+        // A second response for the same request finds nobody waiting
+        assertFalse(store.complete(response(disbursementId)));
+    }
+
+    @Test
+    public void testExpiredRequestsTimeOut() throws Exception {
+        PaymentCorrelationStore store = store(Duration.ofMillis(50), 10);
+        CompletableFuture<PaymentDisbursementResponse> expired = store.register(UUID.randomUUID());
+        UUID answeredId = UUID.randomUUID();
+        CompletableFuture<PaymentDisbursementResponse> answered = store.register(answeredId);
+        store.complete(response(answeredId));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> expired.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertFalse(answered.isCompletedExceptionally());
+        assertEquals(0, store.getPendingCount());
+        assertEquals(1.0, meterRegistry.get("payment.correlation.timeouts").counter().count());
+        // The freed permits can be reserved again
+        assertDoesNotThrow(() -> {
+            for (int i = 0; i < 10; i++) {
+                store.register(UUID.randomUUID());
+            }
+        });
+    }
+
+    @Test
+    public void testRegistrationIsBounded() {
+        PaymentCorrelationStore store = store(Duration.ofSeconds(30), 2);
+        UUID disbursementId = UUID.randomUUID();
+        store.register(disbursementId);
+
+        assertThrows(DuplicateCorrelationException.class, () -> store.register(disbursementId));
+        store.register(UUID.randomUUID());
+        assertThrows(CorrelationStoreFullException.class, () -> store.register(UUID.randomUUID()));
+
+        store.fail(disbursementId, new IllegalStateException("Broker unavailable"));
+        assertDoesNotThrow(() -> store.register(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testAnsweredRequestsAreNotRetainedBehindASlowOne() {
+        // Given - A request that is never answered, registered first
+        PaymentCorrelationStore store = store(Duration.ofSeconds(30), 10);
+        store.register(UUID.randomUUID());
+
+        // When - Far more requests than max-pending are answered after it
+        for (int i = 0; i < 10_000; i++) {
+            UUID disbursementId = UUID.randomUUID();
+            store.register(disbursementId);
+            assertTrue(store.complete(response(disbursementId)));
+        }
+
+        // Then - Only the slow request is left, with its timeout
+        assertEquals(1, store.getPendingCount());
+        assertEquals(1, store.getScheduledTimeoutCount());
+    }
+
+    @Test
+    public void testConcurrentRegistrationsNeverExceedTheLimit() throws Exception {
+        PaymentCorrelationStore store = store(Duration.ofSeconds(30), 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> registrations = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                registrations.add(executor.submit(() -> {
+                    try {
+                        store.register(UUID.randomUUID());
+                        return true;
+                    } catch (CorrelationStoreFullException e) {
+                        return false;
+                    }
+                }));
+            }
+            int registered = 0;
+            for (Future<Boolean> registration : registrations) {
+                registered += registration.get() ? 1 : 0;
+            }
+
+            assertEquals(100, registered);
+            assertEquals(100, store.getPendingCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentlyAnsweredRequestsLeaveNoTimeouts() throws Exception {
+        // Given - Requests answered by other threads while the wheel keeps expiring a short timeout
+        PaymentCorrelationStore store = store(Duration.ofMillis(20), 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> requests = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                requests.add(executor.submit(() -> {
+                    for (int j = 0; j < 5_000; j++) {
+                        UUID disbursementId = UUID.randomUUID();
+                        store.register(disbursementId);
+                        store.complete(response(disbursementId));
+                    }
+                }));
+            }
+
+            // When
+            for (Future<?> request : requests) {
+                request.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then - Every timeout was unlinked when its request was answered or expired
+        assertEquals(0, store.getPendingCount());
+        assertEquals(0, store.getScheduledTimeoutCount());
+        System.out.println("[DEBUG_LOG] Scheduled timeouts after 40000 answered requests: "
+            + store.getScheduledTimeoutCount());
+    }
+
+    @Test
+    public void testLookupWithManyPendingRequests() {
+        int count = 300_000;
+        PaymentCorrelationStore store = store(Duration.ofSeconds(30), count);
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID disbursementId = UUID.randomUUID();
+            ids.add(disbursementId);
+            store.register(disbursementId);
+        }
+
+        long start = System.nanoTime();
+        for (UUID disbursementId : ids) {
+            assertTrue(store.complete(response(disbursementId)));
+        }
+        double averageMicros = (System.nanoTime() - start) / 1000.0 / count;
+
+        System.out.println("[DEBUG_LOG] Average completion with " + count + " pending: " + averageMicros + " us");
+        assertTrue(averageMicros < 1000);
+        assertEquals(0, store.getPendingCount());
+    }
+
+    private PaymentCorrelationStore store(Duration timeout, int maxPending) {
+        PaymentCorrelationStore store = new PaymentCorrelationStore(timeout, maxPending, meterRegistry);
+        stores.add(store);
+        return store;
+    }
+
+    private static PaymentDisbursementResponse response(UUID disbursementId) {
+        PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+        response.setDisbursementId(disbursementId);
+        response.setStatus(PaymentDisbursementResponse.Status.PROCESSED);
+        response.setTransactionId("txn_1234567890");
+        return response;
+    }
+}
@@ -0,0 +1,78 @@
+package ch.ruyalabs.springkafkalabs.kafka.header;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class HeaderMatcherTest {
+
+    private static final HeaderMatcher STRUCTURED =
+        HeaderMatcher.mediaType("content-type", "application/cloudevents+json");
+
+    @Test
+    public void testMediaTypeMatchIgnoresCaseAndParameters() {
+        assertTrue(STRUCTURED.matches("application/cloudevents+json".getBytes()));
+        assertTrue(STRUCTURED.matches("application/cloudevents+json; charset=UTF-8".getBytes()));
+        assertTrue(STRUCTURED.matches("Application/CloudEvents+JSON;charset=utf-8".getBytes()));
+        assertTrue(STRUCTURED.matches(" application/cloudevents+json".getBytes()));
+
+        assertFalse(STRUCTURED.matches("application/json".getBytes()));
+        assertFalse(STRUCTURED.matches("application/cloudevents+json-seq".getBytes()));
+        assertFalse(STRUCTURED.matches("application/cloudevents".getBytes()));
+        assertFalse(STRUCTURED.matches(new byte[0]));
+        assertFalse(STRUCTURED.matches((byte[]) null));
+    }
+
+    @Test
+    public void testExactAndPrefixMatch() {
+        HeaderMatcher type = HeaderMatcher.exact("ce_type", "com.ruyalabs.payment.disbursement.request");
+        assertTrue(type.matches("com.ruyalabs.payment.disbursement.request".getBytes()));
+        assertFalse(type.matches("COM.ruyalabs.payment.disbursement.request".getBytes()));
+        assertFalse(type.matches("com.ruyalabs.payment.disbursement.request.v2".getBytes()));
+
+        HeaderMatcher prefix = HeaderMatcher.prefix("ce_source", "payment-");
+        assertTrue(prefix.matches("Payment-2-service".getBytes()));
+        assertFalse(prefix.matches("pay".getBytes()));
+    }
+
+    @Test
+    public void testMatchesUsesLastHeader() {
+        RecordHeaders headers = new RecordHeaders();
+        assertFalse(STRUCTURED.matches(headers));
+
+        headers.add("content-type", "application/json".getBytes());
+        headers.add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+        assertTrue(STRUCTURED.matches(headers));
+    }
+
+    @Test
+    public void testMatchingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("ce_type", "com.ruyalabs.payment.disbursement.request".getBytes());
+        headers.add("content-type", "application/cloudevents+json; charset=UTF-8".getBytes());
+        HeaderMatcher type = HeaderMatcher.exact("ce_type", "com.ruyalabs.payment.disbursement.request");
+
+        int matches = 0;
+        for (int i = 0; i < 10_000; i++) {
+            matches += STRUCTURED.matches(headers) && type.matches(headers) ? 1 : 0;
+        }
+
+        long before = threadMXBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            matches += STRUCTURED.matches(headers) && type.matches(headers) ? 1 : 0;
+        }
+        long allocated = threadMXBean.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(110_000, matches);
+        // Anything allocated per call would add up to megabytes over 100k calls
+        assertTrue(allocated < 1024, "Expected no allocation per call, but " + allocated + " bytes were allocated");
+    }
+}
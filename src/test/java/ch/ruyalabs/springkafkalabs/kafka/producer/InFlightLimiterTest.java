@@ -0,0 +1,103 @@
+package ch.ruyalabs.springkafkalabs.kafka.producer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InFlightLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testPermitsAreReturnedOnRelease() {
+        InFlightLimiter limiter = limiter("fail-fast", 2);
+
+        limiter.acquire();
+        limiter.acquire();
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(2.0, meterRegistry.get("payment.producer.in-flight").gauge().value());
+
+        limiter.release();
+        assertDoesNotThrow(limiter::acquire);
+        assertEquals(2.0, meterRegistry.get("payment.producer.in-flight.limit").gauge().value());
+    }
+
+    @Test
+    public void testFailFastRejectsWhenSaturated() {
+        InFlightLimiter limiter = limiter("fail-fast", 1);
+        limiter.acquire();
+
+        ProducerSaturatedException e = assertThrows(ProducerSaturatedException.class, limiter::acquire);
+
+        assertEquals(InFlightLimiter.Policy.FAIL_FAST, e.getPolicy());
+        assertEquals(Duration.ofSeconds(2), e.getRetryAfter());
+        assertEquals(1.0, meterRegistry.get("payment.producer.rejected").counter().count());
+    }
+
+    @Test
+    public void testWaitGetsPermitReleasedWhileWaiting() throws InterruptedException {
+        InFlightLimiter limiter = limiter("wait", 1);
+        limiter.acquire();
+
+        Thread releaser = new Thread(() -> {
+            sleep(50);
+            limiter.release();
+        });
+        releaser.start();
+
+        assertDoesNotThrow(limiter::acquire);
+        releaser.join();
+    }
+
+    @Test
+    public void testWaitTimesOut() {
+        InFlightLimiter limiter = limiter("wait", 1);
+        limiter.acquire();
+
+        long start = System.nanoTime();
+        ProducerSaturatedException e = assertThrows(ProducerSaturatedException.class, limiter::acquire);
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("[DEBUG_LOG] Waited " + waitedMillis + " ms for a permit");
+        assertEquals(InFlightLimiter.Policy.WAIT, e.getPolicy());
+        assertTrue(waitedMillis >= 200);
+    }
+
+    @Test
+    public void testBlockingAcquireWaitsBeyondMaxWaitWhateverThePolicy() throws InterruptedException {
+        InFlightLimiter limiter = limiter("fail-fast", 1);
+        limiter.acquire();
+
+        // Released after max-wait (200 ms), which would have failed a regular acquire
+        Thread releaser = new Thread(() -> {
+            sleep(400);
+            limiter.release();
+        });
+        releaser.start();
+
+        long start = System.nanoTime();
+        assertDoesNotThrow(limiter::acquireBlocking);
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+        releaser.join();
+
+        System.out.println("[DEBUG_LOG] Waited " + waitedMillis + " ms for a permit");
+        assertTrue(waitedMillis >= 300);
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0.0, meterRegistry.get("payment.producer.rejected").counter().count());
+    }
+
+    private InFlightLimiter limiter(String policy, int limit) {
+        return new InFlightLimiter(limit, policy, Duration.ofMillis(200), Duration.ofSeconds(2), meterRegistry);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ch.ruyalabs.springkafkalabs.kafka.status;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import ch.ruyalabs.types.PaymentDisbursementResponse.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentStatusIndexTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testLatestStatusIsReturned() {
+        PaymentStatusIndex index = new PaymentStatusIndex(16, meterRegistry);
+        UUID disbursementId = UUID.randomUUID();
+
+        index.update(response(disbursementId, Status.PENDING, null, 1_000L));
+        index.update(response(disbursementId, Status.PROCESSED, "txn_1234567890", 2_000L));
+
+        PaymentStatusEntry entry = index.get(disbursementId);
+        assertEquals(Status.PROCESSED, entry.status());
+        assertEquals("txn_1234567890", entry.transactionId());
+        assertEquals(2_000L, entry.updatedAt().toEpochMilli());
+        assertEquals(1, index.size());
+        assertNull(index.get(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testChangedTransactionIdReplacesPreviousOne() {
+        PaymentStatusIndex index = new PaymentStatusIndex(16, meterRegistry);
+        UUID disbursementId = UUID.randomUUID();
+
+        index.update(response(disbursementId, Status.FAILED, "txn_1", 1_000L));
+        index.update(response(disbursementId, Status.PROCESSED, "txn_22", 2_000L));
+
+        assertEquals("txn_22", index.get(disbursementId).transactionId());
+    }
+
+    @Test
+    public void testIndexGrowsAndKeepsAllEntries() {
+        PaymentStatusIndex index = new PaymentStatusIndex(16, meterRegistry);
+        int count = 500_000;
+        for (int i = 0; i < count; i++) {
+            index.update(response(new UUID(i, ~i), Status.PROCESSED, "txn_" + (1_000_000_000L + i), i));
+        }
+
+        assertEquals(count, index.size());
+        for (int i = 0; i < count; i += 997) {
+            PaymentStatusEntry entry = index.get(new UUID(i, ~i));
+            assertEquals("txn_" + (1_000_000_000L + i), entry.transactionId());
+            assertEquals(i, entry.updatedAt().toEpochMilli());
+        }
+
+        double bytesPerEntry = (double) index.getMemoryBytes() / count;
+        System.out.println("[DEBUG_LOG] " + count + " entries in " + index.getMemoryBytes() + " bytes, "
+            + bytesPerEntry + " bytes per entry");
+        assertEquals((double) count, meterRegistry.get("payment.status.index.entries").gauge().value());
+        // Slots between 0.375 and 0.75 load, plus the arena after its last doubling
+        assertTrue(bytesPerEntry < 140);
+    }
+
+    private static PaymentDisbursementResponse response(UUID disbursementId, Status status, String transactionId,
+                                                        long processedAt) {
+        PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+        response.setDisbursementId(disbursementId);
+        response.setStatus(status);
+        response.setTransactionId(transactionId);
+        response.setProcessedAt(new Date(processedAt));
+        return response;
+    }
+}
@@ -0,0 +1,146 @@
+package ch.ruyalabs.springkafkalabs.kafka.status;
+
+import ch.ruyalabs.types.PaymentDisbursementResponse;
+import ch.ruyalabs.types.PaymentDisbursementResponse.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentStatusSnapshotterTest {
+
+    @TempDir
+    private Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testSnapshotIsRestoredWithPositions() throws Exception {
+        Path path = directory.resolve("status.snapshot");
+        PaymentStatusIndex index = index();
+        UUID processedId = UUID.randomUUID();
+        UUID pendingId = UUID.randomUUID();
+        index.update(response(processedId, Status.PROCESSED, "txn_1234567890"));
+        index.update(response(pendingId, Status.PENDING, null));
+        index.recordPosition("payment-responses", 0, 42L);
+        index.recordPosition("payment-responses", 1, 7L);
+
+        new PaymentStatusSnapshotter(index, false, path, Duration.ofHours(1)).snapshot();
+
+        PaymentStatusIndex restored = index();
+        new PaymentStatusSnapshotter(restored, false, path, Duration.ofHours(1)).restore();
+
+        assertEquals(2, restored.size());
+        assertEquals("txn_1234567890", restored.get(processedId).transactionId());
+        assertEquals(Status.PENDING, restored.get(pendingId).status());
+        assertNull(restored.get(pendingId).transactionId());
+        assertEquals(42L, restored.takeRestoredPosition(new TopicPartition("payment-responses", 0)));
+        assertEquals(7L, restored.takeRestoredPosition(new TopicPartition("payment-responses", 1)));
+        // Every partition is sought at most once
+        assertNull(restored.takeRestoredPosition(new TopicPartition("payment-responses", 0)));
+    }
+
+    @Test
+    public void testPositionsOnlyMoveForward() throws Exception {
+        Path path = directory.resolve("positions.snapshot");
+        PaymentStatusIndex index = index();
+        TopicPartition partition = new TopicPartition("payment-responses", 0);
+        index.recordPosition(partition, 42L);
+        // A lane finishing late must not move the partition back
+        index.recordPosition(partition, 40L);
+        index.recordPosition("payment-responses", 0, 43L);
+
+        new PaymentStatusSnapshotter(index, false, path, Duration.ofHours(1)).snapshot();
+        // Updates made after the snapshot was written are not in it
+        index.recordPosition(partition, 50L);
+        index.update(response(UUID.randomUUID(), Status.PROCESSED, "txn_late"));
+
+        PaymentStatusIndex restored = index();
+        new PaymentStatusSnapshotter(restored, false, path, Duration.ofHours(1)).restore();
+
+        assertEquals(0, restored.size());
+        assertEquals(43L, restored.takeRestoredPosition(partition));
+        System.out.println("[DEBUG_LOG] Restored position: 43");
+    }
+
+    @Test
+    public void testSnapshotSpanningManyMappedRegions() throws Exception {
+        Path path = directory.resolve("regions.snapshot");
+        PaymentStatusIndex index = index();
+        for (int i = 0; i < 10_000; i++) {
+            index.update(response(new UUID(i, i), Status.PROCESSED, "txn_" + i));
+        }
+
+        // Regions of 1000 bytes, so entries and transactionIds cross region boundaries
+        try (MappedSnapshotWriter out = new MappedSnapshotWriter(path, 1000)) {
+            index.writeSnapshot(out);
+        }
+        PaymentStatusIndex restored = index();
+        try (MappedSnapshotReader in = new MappedSnapshotReader(path, 1000)) {
+            restored.restoreSnapshot(in);
+        }
+
+        System.out.println("[DEBUG_LOG] Snapshot of 10000 entries: " + Files.size(path) + " bytes");
+        assertEquals(10_000, restored.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals("txn_" + i, restored.get(new UUID(i, i)).transactionId());
+        }
+    }
+
+    @Test
+    public void testTruncatedSnapshotLeavesIndexEmpty() throws Exception {
+        Path path = directory.resolve("truncated.snapshot");
+        PaymentStatusIndex index = index();
+        index.update(response(UUID.randomUUID(), Status.PROCESSED, "txn_1"));
+        index.recordPosition("payment-responses", 0, 1L);
+        new PaymentStatusSnapshotter(index, false, path, Duration.ofHours(1)).snapshot();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+
+        PaymentStatusIndex restored = index();
+        assertDoesNotThrow(() -> new PaymentStatusSnapshotter(restored, false, path, Duration.ofHours(1)).restore());
+
+        assertEquals(0, restored.size());
+        assertNull(restored.takeRestoredPosition(new TopicPartition("payment-responses", 0)));
+    }
+
+    @Test
+    public void testEnabledSnapshotterRestoresOnStartupAndSnapshotsOnShutdown() {
+        Path path = directory.resolve("nested").resolve("status.snapshot");
+        PaymentStatusIndex index = index();
+        UUID disbursementId = UUID.randomUUID();
+
+        PaymentStatusSnapshotter snapshotter = new PaymentStatusSnapshotter(index, true, path, Duration.ofHours(1));
+        index.update(response(disbursementId, Status.FAILED, null));
+        snapshotter.destroy();
+        assertTrue(Files.isRegularFile(path));
+
+        PaymentStatusIndex restored = index();
+        new PaymentStatusSnapshotter(restored, true, path, Duration.ofHours(1)).destroy();
+        assertEquals(Status.FAILED, restored.get(disbursementId).status());
+    }
+
+    private PaymentStatusIndex index() {
+        return new PaymentStatusIndex(16, meterRegistry);
+    }
+
+    private static PaymentDisbursementResponse response(UUID disbursementId, Status status, String transactionId) {
+        PaymentDisbursementResponse response = new PaymentDisbursementResponse();
+        response.setDisbursementId(disbursementId);
+        response.setStatus(status);
+        response.setTransactionId(transactionId);
+        response.setProcessedAt(new Date());
+        return response;
+    }
+}